@@ -52,6 +52,8 @@ public final class Communicator {
 
     //查询Node
     private final QueryHelper queryHelper = new QueryHelper(this);
+    //合并刷新servant node
+    private final ServantNodeRefresher servantNodeRefresher = new ServantNodeRefresher(this);
     //上报调用
     private final StatHelper statHelper = new StatHelper(this);
 
@@ -96,6 +98,7 @@ public final class Communicator {
     }
 
     public void shutdown() {
+        servantNodeRefresher.shutdown();
         this.threadPoolExecutor.shutdownNow();
         ScheduledExecutorManager.getInstance().shutdownNow();
         TicketManager.shutdown();
@@ -166,6 +169,10 @@ public final class Communicator {
         return queryHelper;
     }
 
+    ServantNodeRefresher getServantNodeRefresher() {
+        return servantNodeRefresher;
+    }
+
     public StatHelper getStatHelper() {
         return statHelper;
     }
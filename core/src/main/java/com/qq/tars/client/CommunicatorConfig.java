@@ -49,6 +49,9 @@ public class CommunicatorConfig {
     private String setID;
 
     private int connections = Constants.default_connections;
+    private int maxInFlight = Constants.default_max_inflight;
+    private int maxBatchSize = Constants.default_max_batch_size;
+    private int maxConnections = Constants.default_max_connections;
     private int connectTimeout = Constants.default_connect_timeout;
     private int corePoolSize = Constants.default_core_pool_size;
     private int maxPoolSize = Constants.default_max_pool_size;
@@ -110,6 +113,9 @@ public class CommunicatorConfig {
         }
 
         connections = conf.getInt("/tars/application/client<connections>", Constants.default_connections);
+        maxInFlight = conf.getInt("/tars/application/client<max-inflight>", Constants.default_max_inflight);
+        maxBatchSize = conf.getInt("/tars/application/client<max-batch-size>", Constants.default_max_batch_size);
+        maxConnections = conf.getInt("/tars/application/client<max-connections>", Constants.default_max_connections);
         connectTimeout = conf.getInt("/tars/application/client<connect-timeout>", Constants.default_connect_timeout);
         corePoolSize = conf.getInt("/tars/application/client<corepoolsize>", Constants.default_core_pool_size);
         maxPoolSize = conf.getInt("/tars/application/client<maxpoolsize>", Constants.default_max_pool_size);
@@ -295,6 +301,33 @@ public class CommunicatorConfig {
         return this;
     }
 
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public CommunicatorConfig setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public CommunicatorConfig setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public CommunicatorConfig setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
     public int getConnectTimeout() {
         return connectTimeout;
     }
@@ -422,6 +455,9 @@ public class CommunicatorConfig {
                 ", setArea='" + setArea + '\'' +
                 ", setID='" + setID + '\'' +
                 ", connections=" + connections +
+                ", maxInFlight=" + maxInFlight +
+                ", maxBatchSize=" + maxBatchSize +
+                ", maxConnections=" + maxConnections +
                 ", connectTimeout=" + connectTimeout +
                 ", corePoolSize=" + corePoolSize +
                 ", maxPoolSize=" + maxPoolSize +
@@ -16,21 +16,32 @@
 
 package com.qq.tars.client;
 
+import com.qq.tars.client.cluster.ServantnvokerAliveChecker;
+import com.qq.tars.client.rpc.HedgePolicy;
+import com.qq.tars.client.rpc.RetryBudget;
+import com.qq.tars.client.rpc.ServantInvokeContext;
 import com.qq.tars.client.support.ServantCacheManager;
 import com.qq.tars.client.util.ClientLogger;
-import com.qq.tars.client.util.ParseTools;
 import com.qq.tars.common.support.ScheduledExecutorManager;
+import com.qq.tars.common.util.Deadline;
 import com.qq.tars.common.util.StringUtils;
-import com.qq.tars.register.RegisterManager;
+import com.qq.tars.context.DistributedContext;
+import com.qq.tars.context.DistributedContextManager;
 import com.qq.tars.rpc.common.*;
 import com.qq.tars.rpc.common.exc.NoInvokerException;
 import com.qq.tars.rpc.exc.ClientException;
 import com.qq.tars.rpc.exc.NoConnectionException;
+import com.qq.tars.support.cache.ResponseCache;
+import com.qq.tars.support.cache.ResponseCacheManager;
 import com.qq.tars.support.stat.InvokeStatHelper;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -50,8 +61,9 @@ public final class ObjectProxy<T> implements ServantProxy, InvocationHandler {
 
     private LoadBalance loadBalancer;
     private ProtocolInvoker<T> protocolInvoker;
+    private final RetryBudget retryBudget;
+    private final HedgePolicy hedgePolicy;
     private ScheduledFuture<?> statReportFuture;
-    private ScheduledFuture<?> queryRefreshFuture;
 
     private final Object refreshLock = new Object();
 
@@ -65,6 +77,8 @@ public final class ObjectProxy<T> implements ServantProxy, InvocationHandler {
         this.servantProxyConfig = servantProxyConfig;
         this.loadBalancer = loadBalance;
         this.protocolInvoker = protocolInvoker;
+        this.retryBudget = new RetryBudget(servantProxyConfig.getRetryBudget(), 10);
+        this.hedgePolicy = HedgePolicy.create(servantProxyConfig, retryBudget);
         this.initialize();
     }
 
@@ -102,10 +116,11 @@ public final class ObjectProxy<T> implements ServantProxy, InvocationHandler {
                 return null;
             }
 
-            //负载均衡器拿到 invoker
-            Invoker invoker = loadBalancer.select(context);
-            //执行方法
-            return invoker.invoke(context);
+            ResponseCache cache = ResponseCacheManager.getInstance().getCache(servantProxyConfig.getSimpleObjectName(), api, method, servantProxyConfig.getCharsetName());
+            if (cache != null) {
+                return invokeWithCache(cache, context, proxy, method, args);
+            }
+            return invokeRemote(context, proxy, method, args);
         } catch (Throwable e) {
             e.printStackTrace();
             if (ClientLogger.getLogger().isDebugEnabled()) {
@@ -119,6 +134,234 @@ public final class ObjectProxy<T> implements ServantProxy, InvocationHandler {
         }
     }
 
+    private Object invokeRemote(InvokeContext context, Object proxy, Method method, Object[] args) throws Throwable {
+        //负载均衡器拿到 invoker
+        Invoker<T> invoker = loadBalancer.select(context);
+        retryBudget.deposit();
+        if (hedgePolicy != null && hedgePolicy.isHedged(method.getName())) {
+            return invokeWithHedging(invoker, context, proxy, method, args);
+        }
+        //执行方法
+        return invoker.invoke(context);
+    }
+
+    /**
+     * 先查本地响应缓存, 命中时不经过负载均衡, 也不计入节点的调用统计.
+     * 相同参数的并发未命中只有一个调用发出请求, 其他调用等待其结果, 该请求失败时各自再发一次
+     */
+    private Object invokeWithCache(ResponseCache cache, InvokeContext context, Object proxy, Method method, Object[] args) throws Throwable {
+        ResponseCache.Key key = cache.newKey(args, context.getAttachments());
+        byte[] value = cache.get(key);
+        if (value != null) {
+            return cache.decodeResult(value);
+        }
+
+        ResponseCache.Flight flight = new ResponseCache.Flight();
+        ResponseCache.Flight current = cache.join(key, flight);
+        if (current != null) {
+            value = current.await(Deadline.cap(servantProxyConfig.getSyncTimeout()));
+            if (value != null) {
+                return cache.decodeResult(value);
+            }
+            return invokeRemote(context, proxy, method, args);
+        }
+
+        value = null;
+        try {
+            Object result = invokeRemote(context, proxy, method, args);
+            value = cache.encodeResult(result);
+            cache.put(key, value);
+            return result;
+        } finally {
+            cache.finish(key, flight, value);
+        }
+    }
+
+    /**
+     * 对冲调用: 主请求在调用线程中执行, 超过对冲延迟仍未返回时在对冲线程池中向另一个健康节点再发一次请求.
+     * 对冲请求先成功时中断调用线程上等待中的主请求并返回对冲结果, 主请求先成功时取消对冲请求
+     */
+    private Object invokeWithHedging(Invoker<T> primary, InvokeContext context, Object proxy, Method method, Object[] args) throws Throwable {
+        String methodName = method.getName();
+        long delay = hedgePolicy.getDelay(methodName);
+        if (delay < 0) {
+            return invokeAndRecord(primary, context, methodName);
+        }
+        //对冲请求使用独立的调用上下文, 在主请求开始前复制附加参数
+        InvokeContext hedgeContext = protocolInvoker.createContext(proxy, method, args);
+        if (hedgeContext instanceof ServantInvokeContext && context.getAttachments() != null) {
+            ((ServantInvokeContext) hedgeContext).addAttachments(new HashMap<String, String>(context.getAttachments()));
+        }
+        HedgedCall call = new HedgedCall(Thread.currentThread(), primary, hedgeContext, methodName);
+        ScheduledFuture<?> trigger = ScheduledExecutorManager.getInstance().schedule(call, delay, TimeUnit.MILLISECONDS);
+        Object result = null;
+        Throwable error = null;
+        try {
+            result = invokeAndRecord(primary, context, methodName);
+        } catch (Throwable e) {
+            error = e;
+        }
+        trigger.cancel(false);
+        return call.onPrimaryCompleted(result, error);
+    }
+
+    private Object invokeAndRecord(Invoker<T> invoker, InvokeContext context, String methodName) throws Throwable {
+        long begin = System.currentTimeMillis();
+        Object result = invoker.invoke(context);
+        hedgePolicy.record(methodName, System.currentTimeMillis() - begin);
+        return result;
+    }
+
+    /**
+     * 由负载均衡器选出另一个可用节点, hash调用等只能落到同一节点时不对冲
+     */
+    private Invoker<T> selectHedgeInvoker(InvokeContext context, Invoker<T> primary) {
+        for (int i = 0; i < 3; i++) {
+            Invoker<T> invoker;
+            try {
+                invoker = loadBalancer.select(context);
+            } catch (Throwable e) {
+                return null;
+            }
+            if (invoker == primary) {
+                continue;
+            }
+            if (invoker.isAvailable() && ServantnvokerAliveChecker.get(invoker.getUrl()).isAlive()) {
+                return invoker;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 一次对冲调用的状态, 对冲请求在对冲线程池中执行并携带调用线程的分布式上下文.
+     * 状态变化和对调用线程的中断都在同一个监视器内完成, 调用线程据此清除由对冲请求产生的中断标记
+     */
+    private class HedgedCall implements Runnable {
+
+        private static final int RUNNING = 0;
+        private static final int HEDGING = 1;
+        private static final int HEDGE_WON = 2;
+        private static final int DONE = 3;
+
+        private final Thread caller;
+        private final Invoker<T> primary;
+        private final InvokeContext context;
+        private final String methodName;
+        private final Map<String, Object> attributes;
+
+        //以下字段由this保护
+        private int state = RUNNING;
+        private boolean hedgeCompleted = false;
+        private boolean hedgeSucceeded = false;
+        private Object hedgeResult;
+        private Future<?> hedgeFuture;
+
+        HedgedCall(Thread caller, Invoker<T> primary, InvokeContext context, String methodName) {
+            this.caller = caller;
+            this.primary = primary;
+            this.context = context;
+            this.methodName = methodName;
+            this.attributes = new HashMap<String, Object>(DistributedContextManager.getDistributedContext().getAttrbuites());
+        }
+
+        /**
+         * 对冲延迟到期, 主请求仍未返回时发出对冲请求
+         */
+        public void run() {
+            synchronized (this) {
+                if (state != RUNNING) {
+                    return;
+                }
+            }
+            final Invoker<T> backup = selectHedgeInvoker(context, primary);
+            if (backup == null || !hedgePolicy.tryAcquire()) {
+                return;
+            }
+            synchronized (this) {
+                if (state != RUNNING) {
+                    return;
+                }
+                try {
+                    hedgeFuture = HedgePolicy.getExecutor().submit(new Runnable() {
+
+                        public void run() {
+                            invokeHedge(backup);
+                        }
+                    });
+                    state = HEDGING;
+                    ClientLogger.getLogger().debug(servantProxyConfig.getSimpleObjectName() + " hedge " + methodName + "|" + backup.getUrl().toIdentityString());
+                } catch (RejectedExecutionException e) {
+                    //对冲线程已达上限, 本次不对冲
+                    ClientLogger.getLogger().debug(servantProxyConfig.getSimpleObjectName() + " hedge executor is full, skip hedge " + methodName);
+                }
+            }
+        }
+
+        private void invokeHedge(Invoker<T> backup) {
+            DistributedContext distributedContext = DistributedContextManager.getDistributedContext();
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                distributedContext.put(attribute.getKey(), attribute.getValue());
+            }
+            try {
+                Object result = invokeAndRecord(backup, context, methodName);
+                onHedgeCompleted(true, result);
+            } catch (Throwable e) {
+                onHedgeCompleted(false, null);
+            } finally {
+                DistributedContextManager.releaseDistributedContext();
+            }
+        }
+
+        private synchronized void onHedgeCompleted(boolean success, Object result) {
+            hedgeCompleted = true;
+            hedgeSucceeded = success;
+            hedgeResult = result;
+            if (success && state == HEDGING) {
+                //中断调用线程上仍在等待的主请求
+                state = HEDGE_WON;
+                caller.interrupt();
+            }
+            notifyAll();
+        }
+
+        /**
+         * 主请求结束后在调用线程中调用, 返回最终结果
+         */
+        synchronized Object onPrimaryCompleted(Object result, Throwable error) throws Throwable {
+            if (state == HEDGE_WON) {
+                //清除对冲请求产生的中断标记
+                Thread.interrupted();
+                return hedgeResult;
+            }
+            int previous = state;
+            state = DONE;
+            if (error == null) {
+                if (hedgeFuture != null) {
+                    hedgeFuture.cancel(true);
+                }
+                return result;
+            }
+            if (previous != HEDGING) {
+                throw error;
+            }
+            //主请求失败, 等待仍在执行的对冲请求
+            while (!hedgeCompleted) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    hedgeFuture.cancel(true);
+                    Thread.currentThread().interrupt();
+                    throw error;
+                }
+            }
+            if (hedgeSucceeded) {
+                return hedgeResult;
+            }
+            throw error;
+        }
+    }
+
     public Url selectUrl() {
         return loadBalancer.select(null).getUrl();
     }
@@ -143,8 +386,7 @@ public final class ObjectProxy<T> implements ServantProxy, InvocationHandler {
     public void destroy() {
         if (statReportFuture != null)
             statReportFuture.cancel(false);
-        if (queryRefreshFuture != null)
-            queryRefreshFuture.cancel(false);
+        communicator.getServantNodeRefresher().unregister(this);
         protocolInvoker.destroy();
     }
 
@@ -160,10 +402,8 @@ public final class ObjectProxy<T> implements ServantProxy, InvocationHandler {
             //注册客户端上报
             this.registryStatReproter();
         }
-        if (!servantProxyConfig.isDirectConnection()) {
-            //非直连，每60秒刷新一次servant node
-            this.registryServantNodeRefresher();
-        }
+        //非直连，每60秒刷新一次servant node
+        this.registryServantNodeRefresher();
     }
 
     /**
@@ -181,43 +421,19 @@ public final class ObjectProxy<T> implements ServantProxy, InvocationHandler {
     }
 
     private void registryServantNodeRefresher() {
-        if (this.queryRefreshFuture != null && !this.queryRefreshFuture.isCancelled()) {
-            this.queryRefreshFuture.cancel(false);
-        }
-        if (!servantProxyConfig.isDirectConnection()) {
-            //非直连
-            int interval = servantProxyConfig.getRefreshInterval();
-            int initialDelay = interval + (random.nextInt(30) * 1000);
-            this.queryRefreshFuture = ScheduledExecutorManager.getInstance().scheduleAtFixedRate(new ServantNodeRefresher(), initialDelay, interval, TimeUnit.MILLISECONDS);
-        }
+        //非直连时由通讯器统一调度刷新，直连时移除
+        communicator.getServantNodeRefresher().register(this);
     }
 
     /**
-     * 定时刷新servantNode
+     * 主控查询到servant node后回调
+     * @param nodes
      */
-    private class ServantNodeRefresher implements Runnable {
-
-        public void run() {
-            long begin = System.currentTimeMillis();
-            try {
-                String nodes;
-                if (RegisterManager.getInstance().getHandler() != null) {
-                    nodes = ParseTools.parse(RegisterManager.getInstance().getHandler().query(servantProxyConfig.getSimpleObjectName()),
-                            servantProxyConfig.getSimpleObjectName());
-                } else {
-                    nodes = communicator.getQueryHelper().getServerNodes(servantProxyConfig);
-                }
-                if (nodes != null && !nodes.equals(servantProxyConfig.getObjectName())) {
-                    servantCacheManager.save(communicator.getId(), servantProxyConfig.getSimpleObjectName(), nodes, communicator.getCommunicatorConfig().getDataPath());
-                    servantProxyConfig.setObjectName(nodes);
-                    refresh();
-                }
-                ClientLogger.getLogger().debug(servantProxyConfig.getSimpleObjectName() + " sync server|" + nodes);
-            } catch (Throwable e) {
-                ClientLogger.getLogger().error(servantProxyConfig.getSimpleObjectName() + " error sync server", e);
-            } finally {
-                ClientLogger.getLogger().info("ServantNodeRefresher run(" + servantProxyConfig.getSimpleObjectName() + "), use: " + (System.currentTimeMillis() - begin));
-            }
+    void onServerNodesRefreshed(String nodes) {
+        if (nodes != null && !nodes.equals(servantProxyConfig.getObjectName())) {
+            servantCacheManager.save(communicator.getId(), servantProxyConfig.getSimpleObjectName(), nodes, communicator.getCommunicatorConfig().getDataPath());
+            servantProxyConfig.setObjectName(nodes);
+            refresh();
         }
     }
 
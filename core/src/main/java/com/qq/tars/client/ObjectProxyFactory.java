@@ -158,6 +158,9 @@ class ObjectProxyFactory {
         cfg.setStat(communicatorConfig.getStat());
         cfg.setCharsetName(communicatorConfig.getCharsetName());
         cfg.setConnections(communicatorConfig.getConnections());
+        cfg.setMaxInFlight(communicatorConfig.getMaxInFlight());
+        cfg.setMaxBatchSize(communicatorConfig.getMaxBatchSize());
+        cfg.setMaxConnections(communicatorConfig.getMaxConnections());
         return cfg;
     }
 
@@ -0,0 +1,225 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ * <p>
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ * <p>
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * <p>
+ * https://opensource.org/licenses/BSD-3-Clause
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.client;
+
+import com.qq.tars.client.util.ClientLogger;
+import com.qq.tars.client.util.ParseTools;
+import com.qq.tars.common.support.ScheduledExecutorManager;
+import com.qq.tars.register.RegisterManager;
+import com.qq.tars.support.query.QueryHelper;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 通讯器内共享的servant node刷新调度
+ * 相同servant(含set)的代理合并为一次主控查询，查询为异步调用，不占用调度线程
+ */
+final class ServantNodeRefresher implements Runnable {
+
+    //调度检查间隔
+    private static final int TICK_INTERVAL = 1000;
+    //首次刷新的最大随机延迟
+    private static final int INITIAL_JITTER = 30 * 1000;
+    //每次刷新间隔的随机抖动比例
+    private static final int JITTER_PERCENT = 10;
+
+    private final Communicator communicator;
+    private final ConcurrentHashMap<String, RefreshGroup> groups = new ConcurrentHashMap<String, RefreshGroup>();
+    private final ConcurrentHashMap<ObjectProxy<?>, String> registered = new ConcurrentHashMap<ObjectProxy<?>, String>();
+    private final Object lock = new Object();
+    private volatile ScheduledFuture<?> future;
+
+    ServantNodeRefresher(Communicator communicator) {
+        this.communicator = communicator;
+    }
+
+    /**
+     * 加入定时刷新，配置变化后重复调用会按新的servant/set重新分组
+     */
+    void register(ObjectProxy<?> proxy) {
+        ServantProxyConfig config = proxy.getConfig();
+        if (config.isDirectConnection()) {
+            unregister(proxy);
+            return;
+        }
+        String key = keyOf(config);
+        synchronized (lock) {
+            String oldKey = registered.put(proxy, key);
+            if (oldKey != null && !oldKey.equals(key)) {
+                removeFromGroup(oldKey, proxy);
+            }
+            RefreshGroup group = groups.get(key);
+            if (group == null) {
+                group = new RefreshGroup(config.getSimpleObjectName(), config.getRefreshInterval());
+                groups.put(key, group);
+            }
+            group.proxies.put(proxy, Boolean.TRUE);
+            if (future == null) {
+                future = ScheduledExecutorManager.getInstance().scheduleAtFixedRate(this, TICK_INTERVAL, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    void unregister(ObjectProxy<?> proxy) {
+        synchronized (lock) {
+            String key = registered.remove(proxy);
+            if (key != null) {
+                removeFromGroup(key, proxy);
+            }
+        }
+    }
+
+    void shutdown() {
+        synchronized (lock) {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+            groups.clear();
+            registered.clear();
+        }
+    }
+
+    public void run() {
+        long now = System.currentTimeMillis();
+        for (RefreshGroup group : groups.values()) {
+            if (now >= group.nextRefreshTime && group.running.compareAndSet(false, true)) {
+                try {
+                    refresh(group);
+                } catch (Throwable e) {
+                    complete(group, null, e);
+                }
+            }
+        }
+    }
+
+    private void refresh(final RefreshGroup group) {
+        group.begin = System.currentTimeMillis();
+        ObjectProxy<?> proxy = group.anyProxy();
+        if (proxy == null) {
+            group.running.set(false);
+            return;
+        }
+        if (RegisterManager.getInstance().getHandler() != null) {
+            String nodes = ParseTools.parse(RegisterManager.getInstance().getHandler().query(group.name), group.name);
+            complete(group, nodes, null);
+            return;
+        }
+        communicator.getQueryHelper().getServerNodesAsync(proxy.getConfig(), new QueryHelper.ServerNodesCallback() {
+
+            public void onCompleted(final String nodes) {
+                //回到调度线程更新invoker，避免在客户端回调线程中建立连接
+                dispatch(group, nodes, null);
+            }
+
+            public void onException(Throwable ex) {
+                dispatch(group, null, ex);
+            }
+        });
+    }
+
+    private void dispatch(final RefreshGroup group, final String nodes, final Throwable ex) {
+        try {
+            ScheduledExecutorManager.getInstance().execute(new Runnable() {
+
+                public void run() {
+                    complete(group, nodes, ex);
+                }
+            });
+        } catch (Throwable e) {
+            group.running.set(false);
+        }
+    }
+
+    private void complete(RefreshGroup group, String nodes, Throwable ex) {
+        try {
+            if (ex != null) {
+                ClientLogger.getLogger().error(group.name + " error sync server", ex);
+                return;
+            }
+            for (ObjectProxy<?> proxy : group.proxies.keySet()) {
+                try {
+                    proxy.onServerNodesRefreshed(nodes);
+                } catch (Throwable e) {
+                    ClientLogger.getLogger().error(group.name + " error refresh server", e);
+                }
+            }
+            ClientLogger.getLogger().debug(group.name + " sync server|" + nodes + "|proxies=" + group.proxies.size());
+        } finally {
+            ClientLogger.getLogger().info("ServantNodeRefresher run(" + group.name + "), use: " + (System.currentTimeMillis() - group.begin));
+            group.scheduleNext();
+            group.running.set(false);
+        }
+    }
+
+    private void removeFromGroup(String key, ObjectProxy<?> proxy) {
+        RefreshGroup group = groups.get(key);
+        if (group != null) {
+            group.proxies.remove(proxy);
+            if (group.proxies.isEmpty()) {
+                groups.remove(key);
+            }
+        }
+    }
+
+    private static String keyOf(ServantProxyConfig config) {
+        if (config.isEnableSet()) {
+            return config.getSimpleObjectName() + "|" + config.getSetDivision();
+        }
+        return config.getSimpleObjectName();
+    }
+
+    /**
+     * 查询相同的一组代理
+     */
+    private static final class RefreshGroup {
+
+        private final String name;
+        private final ConcurrentHashMap<ObjectProxy<?>, Boolean> proxies = new ConcurrentHashMap<ObjectProxy<?>, Boolean>();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private volatile long nextRefreshTime;
+        private volatile long begin;
+
+        RefreshGroup(String name, int interval) {
+            this.name = name;
+            this.nextRefreshTime = System.currentTimeMillis() + interval + ThreadLocalRandom.current().nextInt(INITIAL_JITTER);
+        }
+
+        ObjectProxy<?> anyProxy() {
+            Iterator<ObjectProxy<?>> it = proxies.keySet().iterator();
+            return it.hasNext() ? it.next() : null;
+        }
+
+        void scheduleNext() {
+            //同组代理取最小的刷新间隔
+            int interval = Integer.MAX_VALUE;
+            for (ObjectProxy<?> proxy : proxies.keySet()) {
+                interval = Math.min(interval, proxy.getConfig().getRefreshInterval());
+            }
+            if (interval == Integer.MAX_VALUE) {
+                return;
+            }
+            int jitter = Math.max(interval * JITTER_PERCENT / 100, 1);
+            nextRefreshTime = System.currentTimeMillis() + interval + ThreadLocalRandom.current().nextInt(-jitter, jitter + 1);
+        }
+    }
+}
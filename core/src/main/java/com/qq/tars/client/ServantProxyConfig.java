@@ -42,6 +42,9 @@ public final class ServantProxyConfig {
     private volatile String slaveSetID;
 
     private int connections = Constants.default_connections;
+    private int maxInFlight = Constants.default_max_inflight;
+    private int maxBatchSize = Constants.default_max_batch_size;
+    private int maxConnections = Constants.default_max_connections;
     private int connectTimeout = Constants.default_connect_timeout;
     private int syncTimeout = Constants.default_sync_timeout;
     private int asyncTimeout = Constants.default_async_timeout;
@@ -65,6 +68,12 @@ public final class ServantProxyConfig {
     private int maxStaticWeightLimit = 100;
     private int defaultConHashVirtualNodes = 100;
 
+    //允许对冲请求的幂等方法, 逗号分隔
+    private String hedgeMethods = null;
+    private int hedgeDelay = 0;
+    private int hedgePercentile = 95;
+    private int retryBudget = 10;
+
     public ServantProxyConfig(String objectName) {
         this(null, null, objectName);
     }
@@ -305,6 +314,91 @@ public final class ServantProxyConfig {
         }
     }
 
+    /**
+     * 每个连接允许的最大在途请求数, 小于等于0表示不限制
+     * @return
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 同一连接上并发的请求最多合并为一个批量请求包的个数, 小于等于1表示不合并.
+     * 只对声明支持批量请求的服务端生效
+     * @return
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 允许发送对冲请求的方法名, 逗号分隔, 只能配置幂等方法
+     * @return
+     */
+    public String getHedgeMethods() {
+        return hedgeMethods;
+    }
+
+    public void setHedgeMethods(String hedgeMethods) {
+        this.hedgeMethods = hedgeMethods;
+    }
+
+    /**
+     * 发出对冲请求前的最小等待时间(毫秒), 耗时样本不足时只使用该值, 为0时样本不足不对冲
+     * @return
+     */
+    public int getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    public void setHedgeDelay(int hedgeDelay) {
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    /**
+     * 调用耗时超过近期该分位数时发出对冲请求
+     * @return
+     */
+    public int getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(int hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * 重试和对冲请求数占调用数的最大百分比
+     * @return
+     */
+    public int getRetryBudget() {
+        return retryBudget;
+    }
+
+    public void setRetryBudget(int retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * 每个节点允许自动扩容到的最大连接数, 不大于connections时连接数固定不变
+     * @return
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
     public int getRefreshInterval() {
         return refreshInterval;
     }
@@ -388,6 +482,10 @@ public final class ServantProxyConfig {
                 ", slaveSetArea='" + slaveSetArea + '\'' +
                 ", slaveSetID='" + slaveSetID + '\'' +
                 ", connections=" + connections +
+                ", maxInFlight=" + maxInFlight +
+                ", maxBatchSize=" + maxBatchSize +
+                ", maxConnections=" + maxConnections +
+                ", hedgeMethods=" + hedgeMethods +
                 ", connectTimeout=" + connectTimeout +
                 ", syncTimeout=" + syncTimeout +
                 ", asyncTimeout=" + asyncTimeout +
@@ -0,0 +1,159 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.client.rpc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.qq.tars.client.ServantProxyConfig;
+import com.qq.tars.common.util.StringUtils;
+import com.qq.tars.common.util.concurrent.TaskThreadFactory;
+
+/**
+ * 对冲请求策略: 幂等方法的调用超过近期耗时分位数仍未返回时, 向另一个节点再发一次相同请求.
+ * 对冲请求与重试共用同一个重试预算
+ */
+public class HedgePolicy {
+
+    private static final int WINDOW_SIZE = 256;
+    //样本数不足时不使用分位数
+    private static final int MIN_SAMPLES = 32;
+    //每积累多少个样本重新计算一次分位数
+    private static final int RECALC_INTERVAL = 32;
+    //同时在途的对冲请求上限, 超过时不再对冲
+    private static final int MAX_HEDGE_THREADS = 64;
+
+    private static volatile ExecutorService executor;
+
+    private final Set<String> methods;
+    private final int minDelay;
+    private final int percentile;
+    private final RetryBudget budget;
+    private final ConcurrentHashMap<String, LatencyWindow> windows = new ConcurrentHashMap<String, LatencyWindow>();
+
+    private HedgePolicy(Set<String> methods, int minDelay, int percentile, RetryBudget budget) {
+        this.methods = methods;
+        this.minDelay = minDelay;
+        this.percentile = Math.min(Math.max(percentile, 1), 99);
+        this.budget = budget;
+    }
+
+    /**
+     * 没有配置对冲方法时返回null
+     */
+    public static HedgePolicy create(ServantProxyConfig config, RetryBudget budget) {
+        String hedgeMethods = config.getHedgeMethods();
+        if (StringUtils.isEmpty(hedgeMethods) || config.getRetryBudget() <= 0) {
+            return null;
+        }
+        Set<String> methods = new HashSet<String>();
+        for (String method : hedgeMethods.split(",")) {
+            if (!StringUtils.isEmpty(method.trim())) {
+                methods.add(method.trim());
+            }
+        }
+        if (methods.isEmpty()) {
+            return null;
+        }
+        return new HedgePolicy(Collections.unmodifiableSet(methods), config.getHedgeDelay(), config.getHedgePercentile(), budget);
+    }
+
+    /**
+     * 对冲请求使用独立的有界线程池, 只执行对冲请求, 线程用满时提交会被拒绝
+     */
+    public static ExecutorService getExecutor() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (HedgePolicy.class) {
+                current = executor;
+                if (current == null) {
+                    current = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new TaskThreadFactory("tars-hedge-executor-"));
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public boolean isHedged(String methodName) {
+        return methods.contains(methodName);
+    }
+
+    /**
+     * 发出对冲请求前的等待时间, 小于0表示暂不对冲
+     */
+    public long getDelay(String methodName) {
+        LatencyWindow window = windows.get(methodName);
+        long delay = window == null ? -1 : window.delay;
+        if (delay < 0) {
+            return minDelay > 0 ? minDelay : -1;
+        }
+        return Math.max(delay, minDelay);
+    }
+
+    /**
+     * 记录一次成功调用的耗时
+     */
+    public void record(String methodName, long cost) {
+        LatencyWindow window = windows.get(methodName);
+        if (window == null) {
+            LatencyWindow tmp = new LatencyWindow();
+            window = windows.putIfAbsent(methodName, tmp);
+            if (window == null) {
+                window = tmp;
+            }
+        }
+        window.add(cost, percentile);
+    }
+
+    /**
+     * 占用一个对冲请求的预算, 预算不足时返回false
+     */
+    public boolean tryAcquire() {
+        return budget.tryWithdraw();
+    }
+
+    /**
+     * 最近WINDOW_SIZE次调用的耗时, 定期计算分位数
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile long delay = -1;
+
+        void add(long cost, int percentile) {
+            int i = count.getAndIncrement() & Integer.MAX_VALUE;
+            samples[i % WINDOW_SIZE] = cost;
+            int n = i + 1;
+            if (n >= MIN_SAMPLES && n % RECALC_INTERVAL == 0) {
+                int size = Math.min(n, WINDOW_SIZE);
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                delay = sorted[Math.min(size * percentile / 100, size - 1)];
+            }
+        }
+    }
+}
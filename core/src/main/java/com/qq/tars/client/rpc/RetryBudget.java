@@ -0,0 +1,72 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.client.rpc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算: 每次调用按比例积累令牌, 每次重试或对冲请求消耗一个令牌.
+ * 下游故障时重试数不会超过调用数的固定比例, 避免故障在调用链上被放大
+ */
+public class RetryBudget {
+
+    //令牌以1/100个请求为单位
+    private static final long TOKEN = 100;
+
+    private final int ratio;
+    private final long maxTokens;
+    private final AtomicLong tokens = new AtomicLong();
+
+    /**
+     * @param ratio 重试数占调用数的最大百分比
+     * @param maxRetries 最多积累的重试次数
+     */
+    public RetryBudget(int ratio, int maxRetries) {
+        this.ratio = Math.min(Math.max(ratio, 0), 100);
+        this.maxTokens = Math.max(maxRetries, 1) * TOKEN;
+    }
+
+    /**
+     * 每次调用积累预算
+     */
+    public void deposit() {
+        if (ratio == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= maxTokens) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(current + ratio, maxTokens)));
+    }
+
+    /**
+     * 占用一次重试的预算, 预算不足时返回false
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+}
@@ -17,16 +17,29 @@
 package com.qq.tars.client.rpc;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.qq.tars.client.util.ClientLogger;
+import com.qq.tars.common.util.concurrent.TaskThreadFactory;
 import com.qq.tars.net.client.Callback;
 import com.qq.tars.net.client.FutureImpl;
 import com.qq.tars.net.client.ticket.Ticket;
@@ -37,10 +50,13 @@ import com.qq.tars.net.core.Session.SessionStatus;
 import com.qq.tars.net.core.nio.SelectorManager;
 import com.qq.tars.net.core.nio.TCPSession;
 import com.qq.tars.net.core.nio.UDPSession;
+import com.qq.tars.rpc.exc.ClientOverloadException;
 import com.qq.tars.rpc.exc.NotConnectedException;
 import com.qq.tars.rpc.exc.TimeoutException;
 import com.qq.tars.rpc.protocol.ServantRequest;
 import com.qq.tars.rpc.protocol.ServantResponse;
+import com.qq.tars.support.om.OmConstants;
+import com.qq.tars.support.property.PropertyReportHelper;
 
 /**
  * 客户端servant
@@ -60,6 +76,38 @@ public class ServantClient {
     private boolean tcpNoDelay = false;
     private static final int INVALID_TRAFFIC_CLASS_VALUE = -1;
 
+    //连接上的在途请求数, maxInFlight小于等于0表示不限制
+    private int maxInFlight = 0;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    private final ReentrantLock connectLock = new ReentrantLock();
+
+    //建连失败后的重连退避时间范围
+    private static final long MIN_RECONNECT_BACKOFF = 100;
+    private static final long MAX_RECONNECT_BACKOFF = 30 * 1000;
+
+    private volatile boolean closed = false;
+    //连续建连失败次数, 大于0时由后台重连, 调用方快速失败
+    private volatile int connectFailures = 0;
+    private final AtomicBoolean reconnectScheduled = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> reconnectFuture;
+    private final AtomicLong connectCount = new AtomicLong();
+    private final AtomicLong connectFailureCount = new AtomicLong();
+    private final AtomicLong totalConnectTime = new AtomicLong();
+    private volatile long lastConnectTime = 0;
+    private final AtomicLong totalBackoffTime = new AtomicLong();
+    private final AtomicLong fastFailures = new AtomicLong();
+
+    //同一连接上并发的请求最多合并为一个批量请求包的个数, 小于等于1表示不合并
+    private int maxBatchSize = 0;
+    //当前连接上的批量发送状态, 重连后重新询问服务端
+    private volatile BatchWriter batchWriter;
+    private final AtomicLong batchedRequests = new AtomicLong();
+    private final AtomicLong batchWrites = new AtomicLong();
+
     public ServantClient(String ip, int port, SelectorManager selectorManager, boolean udpMode) {
         this.host = ip;
         this.port = port;
@@ -68,10 +116,10 @@ public class ServantClient {
     }
 
     /**
-     * 连接服务端
+     * 连接服务端, 需持有connectLock. 等待建连期间不能用synchronized, 否则虚拟线程会被固定在载体线程上
      * @throws IOException
      */
-    protected synchronized void reConnect() throws IOException {
+    private void doReConnect() throws IOException {
         if (isNotConnected()) {
             SocketAddress server = new InetSocketAddress(this.host, this.port);
             SelectableChannel channel = null;
@@ -128,12 +176,146 @@ public class ServantClient {
         }
     }
 
+    /**
+     * 确保连接可用. 同一时间只有一个线程建连, 其余线程最多等待connectTimeout, 超时后由上层换用其他连接或节点;
+     * 建连失败后转为后台退避重连, 期间调用快速失败
+     * @throws IOException
+     */
     public void ensureConnected() throws IOException {
-        if (isNotConnected()) {
-            reConnect();
+        if (!isNotConnected()) {
+            return;
+        }
+        if (closed) {
+            throw new NotConnectedException("client closed|" + this.getAddress());
+        }
+        if (connectFailures > 0) {
+            onFastFail();
+            throw new NotConnectedException("reconnecting in background, failures=" + connectFailures + "|" + this.getAddress());
+        }
+        try {
+            //其他线程(含创建时发起的后台建连)正在建连时等待其结果, 建连本身受connectTimeout限制
+            if (!connectLock.tryLock(connectTimeout, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("wait " + connectTimeout + "ms for connecting timed out|" + this.getAddress());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for connecting|" + this.getAddress());
+        }
+        try {
+            if (!isNotConnected()) {
+                return;
+            }
+            if (connectFailures > 0) {
+                //获取锁之前其他线程建连失败
+                onFastFail();
+                throw new NotConnectedException("reconnecting in background, failures=" + connectFailures + "|" + this.getAddress());
+            }
+            connect();
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    private void onFastFail() {
+        fastFailures.incrementAndGet();
+        PropertyReportHelper.getInstance().reportPropertyValue(OmConstants.PropConnectFastFail, 1);
+    }
+
+    /**
+     * 建连并记录耗时, 失败时进入后台退避重连. 需持有connectLock
+     */
+    private void connect() throws IOException {
+        if (!isNotConnected()) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            doReConnect();
+            success = true;
+        } finally {
+            long cost = System.currentTimeMillis() - begin;
+            if (success) {
+                if (connectFailures > 0) {
+                    ClientLogger.getLogger().info("reconnected to " + this.getAddress() + " after " + connectFailures + " failures, use: " + cost);
+                }
+                connectFailures = 0;
+                connectCount.incrementAndGet();
+                totalConnectTime.addAndGet(cost);
+                lastConnectTime = cost;
+                PropertyReportHelper.getInstance().reportPropertyValue(OmConstants.PropConnectTime, (int) cost);
+            } else {
+                onConnectFailed(cost);
+            }
+        }
+    }
+
+    private void onConnectFailed(long cost) {
+        int failures = ++connectFailures;
+        connectFailureCount.incrementAndGet();
+        PropertyReportHelper.getInstance().reportPropertyValue(OmConstants.PropConnectFailure, 1);
+        if (closed) {
+            return;
+        }
+        //指数退避, 取一半固定加一半随机, 避免大量客户端同时重连
+        long backoff = Math.min(MAX_RECONNECT_BACKOFF, MIN_RECONNECT_BACKOFF << Math.min(failures - 1, 16));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        ClientLogger.getLogger().info("connect failed to " + this.getAddress() + ", failures=" + failures + ", use: " + cost + ", retry after " + delay + "ms");
+        scheduleReconnect(delay);
+    }
+
+    private void scheduleReconnect(long delay) {
+        if (!reconnectScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        totalBackoffTime.addAndGet(delay);
+        PropertyReportHelper.getInstance().reportPropertyValue(OmConstants.PropReconnectBackoff, (int) delay);
+        scheduleConnect(delay);
+    }
+
+    /**
+     * 在后台发起首次建连, 不阻塞调用线程; 建连期间到达的调用在ensureConnected中等待其结果
+     */
+    public void connectInBackground() {
+        if (closed || !isNotConnected() || !reconnectScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        scheduleConnect(0);
+    }
+
+    private void scheduleConnect(long delay) {
+        try {
+            reconnectFuture = ReconnectExecutorHolder.EXECUTOR.schedule(new Runnable() {
+
+                public void run() {
+                    reconnectScheduled.set(false);
+                    connectLock.lock();
+                    try {
+                        //关闭与重连互斥, 已关闭的连接不再重连
+                        if (!closed) {
+                            connect();
+                        }
+                    } catch (Throwable t) {
+                        //失败已在connect中记录并重新调度
+                    } finally {
+                        connectLock.unlock();
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (Throwable t) {
+            reconnectScheduled.set(false);
+            ClientLogger.getLogger().error("error in schedule reconnect to " + this.getAddress(), t);
         }
     }
 
+    /**
+     * 是否正在建连或处于后台退避重连中, 选择连接时应优先跳过
+     * @return
+     */
+    public boolean isReconnecting() {
+        return isNotConnected() && (connectFailures > 0 || connectLock.isLocked());
+    }
+
     /**
      * 同步调用
      * @param request
@@ -143,38 +325,42 @@ public class ServantClient {
      */
     public <T extends ServantResponse> T invokeWithSync(ServantRequest request) throws IOException {
         Ticket<T> ticket = null;
-        T response = null;
+        acquireInFlight();
         try {
             //确认服务端连接是否正常
             ensureConnected();
             request.setInvokeStatus(InvokeStatus.SYNC_CALL);
-            ticket = TicketManager.createTicket(request, session, this.syncTimeout);
+            long timeout = timeoutOf(request, this.syncTimeout);
+            ticket = TicketManager.createTicket(request, session, timeout);
 
             Session current = session;
             //发送IO请求
-            current.write(request);
+            write(current, request);
             //判断是否超时
-            if (!ticket.await(this.syncTimeout, TimeUnit.MILLISECONDS)) {
+            if (!ticket.await(timeout, TimeUnit.MILLISECONDS)) {
                 if (current != null && current.getStatus() != SessionStatus.CLIENT_CONNECTED) {
                     throw new IOException("Connection reset by peer|" + this.getAddress());
                 } else {
-                    throw new TimeoutException("the operation has timeout, " + this.syncTimeout + "ms|" + this.getAddress());
+                    throw new TimeoutException("the operation has timeout, " + timeout + "ms|" + this.getAddress());
                 }
             }
             //拿到返回值
-            response = ticket.response();
+            T response = ticket.response();
             if (response == null) {
                 throw new IOException("the operation is failed.");
             }
+            onResponse(response);
             return response;
         } catch (InterruptedException e) {
-            ClientLogger.getLogger().error(e.getLocalizedMessage());
+            //调用被取消, 例如对冲请求中落败的一方
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("the operation was interrupted|" + this.getAddress());
         } finally {
             if (ticket != null) {
                 TicketManager.removeTicket(ticket.getTicketNumber());
             }
+            releaseInFlight();
         }
-        return response;
     }
 
     /**
@@ -186,18 +372,20 @@ public class ServantClient {
      */
     public <T extends ServantResponse> void invokeWithAsync(ServantRequest request, Callback<T> callback) throws IOException {
         Ticket<T> ticket = null;
-
+        InFlightCallback<T> inFlightCallback = new InFlightCallback<T>(callback);
+        acquireInFlight();
         try {
             ensureConnected();
             request.setInvokeStatus(InvokeStatus.ASYNC_CALL);
-            ticket = TicketManager.createTicket(request, session, this.asyncTimeout, callback);
+            ticket = TicketManager.createTicket(request, session, timeoutOf(request, this.asyncTimeout), inFlightCallback);
 
             Session current = session;
-            current.write(request);
+            write(current, request);
         } catch (Exception ex) {
             if (ticket != null) {
                 TicketManager.removeTicket(ticket.getTicketNumber());
             }
+            inFlightCallback.release();
             throw new IOException("error occurred on invoker with async", ex);
         }
     }
@@ -211,26 +399,209 @@ public class ServantClient {
      */
     public <T extends ServantResponse> Future<T> invokeWithFuture(ServantRequest request) throws IOException {
         Ticket<T> ticket = null;
+        InFlightCallback<T> inFlightCallback = new InFlightCallback<T>(null);
+        acquireInFlight();
         try {
             ensureConnected();
             request.setInvokeStatus(InvokeStatus.FUTURE_CALL);
-            ticket = TicketManager.createTicket(request, session, this.syncTimeout);
+            ticket = TicketManager.createTicket(request, session, timeoutOf(request, this.syncTimeout), inFlightCallback);
 
             Session current = session;
-            current.write(request);
+            write(current, request);
             //返回Future
             return new FutureImpl<T>(ticket);
         } catch (Exception ex) {
             if (ticket != null) {
                 TicketManager.removeTicket(ticket.getTicketNumber());
             }
+            inFlightCallback.release();
             throw new IOException("error occurred on invoker with future", ex);
         }
     }
 
-    private synchronized void shutdown() throws IOException {
-        if (this.session != null) {
-            this.session.asyncClose();
+    /**
+     * 发送请求. 服务端声明支持批量请求后, 并发的请求由当前正在发送的线程合并为一个批量请求包,
+     * 合并发送失败时通过各请求的ticket通知调用方
+     */
+    private void write(Session current, ServantRequest request) throws IOException {
+        if (maxBatchSize <= 1 || !request.isBatchable()) {
+            current.write(request);
+            return;
+        }
+        BatchWriter writer = batchWriter;
+        if (writer == null || writer.session != current) {
+            writer = new BatchWriter(current);
+            batchWriter = writer;
+        }
+        if (Boolean.TRUE.equals(writer.supported)) {
+            writer.write(request);
+            return;
+        }
+        if (writer.supported == null) {
+            request.probeBatchSupport();
+        }
+        current.write(request);
+    }
+
+    /**
+     * 根据询问请求的响应记录服务端是否支持批量请求
+     */
+    private void onResponse(Object response) {
+        BatchWriter writer = batchWriter;
+        if (writer == null || writer.supported != null || !(response instanceof ServantResponse)) {
+            return;
+        }
+        ServantResponse servantResponse = (ServantResponse) response;
+        Boolean supported = servantResponse.getBatchSupport();
+        if (supported != null && servantResponse.getSession() == writer.session) {
+            writer.supported = supported;
+            ClientLogger.getLogger().info("batch request " + (supported ? "enabled" : "not supported") + "|" + this.getAddress());
+        }
+    }
+
+    /**
+     * 请求自带更短的超时时间(例如受上游截止时间限制)时使用请求的超时时间
+     */
+    private long timeoutOf(ServantRequest request, long defaultTimeout) {
+        int timeout = request.getTimeout();
+        return timeout > 0 && timeout < defaultTimeout ? timeout : defaultTimeout;
+    }
+
+    /**
+     * 占用一个在途请求名额, 连接已饱和时快速失败而不是继续堆积到同一个socket上
+     */
+    private void acquireInFlight() {
+        int max = this.maxInFlight;
+        int current;
+        do {
+            current = inFlight.get();
+            if (max > 0 && current >= max) {
+                rejectedRequests.incrementAndGet();
+                throw new ClientOverloadException("too many in-flight requests, inFlight=" + current + ", maxInFlight=" + max + "|" + this.getAddress());
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        totalRequests.incrementAndGet();
+
+        int next = current + 1;
+        int peak = peakInFlight.get();
+        while (next > peak && !peakInFlight.compareAndSet(peak, next)) {
+            peak = peakInFlight.get();
+        }
+    }
+
+    private void releaseInFlight() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 连接是否已达到在途请求上限
+     * @return
+     */
+    public boolean isSaturated() {
+        return maxInFlight > 0 && inFlight.get() >= maxInFlight;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 连接上等待写入socket的数据包个数, 持续积压说明单个连接的写入已成为瓶颈
+     * @return
+     */
+    public int getWriteBacklog() {
+        Session current = session;
+        return current instanceof TCPSession ? ((TCPSession) current).getWriteQueueSize() : 0;
+    }
+
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    public long getTotalRequests() {
+        return totalRequests.get();
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    public long getConnectCount() {
+        return connectCount.get();
+    }
+
+    public long getConnectFailureCount() {
+        return connectFailureCount.get();
+    }
+
+    /**
+     * 成功建连的累计耗时(ms)
+     */
+    public long getTotalConnectTime() {
+        return totalConnectTime.get();
+    }
+
+    public long getLastConnectTime() {
+        return lastConnectTime;
+    }
+
+    /**
+     * 重连退避的累计时间(ms)
+     */
+    public long getTotalBackoffTime() {
+        return totalBackoffTime.get();
+    }
+
+    /**
+     * 因后台退避重连而快速失败的请求数
+     */
+    public long getFastFailures() {
+        return fastFailures.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 合并在批量请求包中发送的请求数
+     */
+    public long getBatchedRequests() {
+        return batchedRequests.get();
+    }
+
+    /**
+     * 发送的批量请求包个数
+     */
+    public long getBatchWrites() {
+        return batchWrites.get();
+    }
+
+    private void shutdown() throws IOException {
+        closed = true;
+        ScheduledFuture<?> future = reconnectFuture;
+        if (future != null) {
+            future.cancel(false);
+        }
+        connectLock.lock();
+        try {
+            if (this.session != null) {
+                this.session.asyncClose();
+            }
+        } finally {
+            connectLock.unlock();
         }
     }
 
@@ -304,4 +675,132 @@ public class ServantClient {
     public String toString() {
         return "ServantClient [client=" + getAddress() + "]";
     }
+
+    /**
+     * 后台重连线程. 线程为非守护线程, 连接关闭时取消待执行的重连, 线程空闲60秒后回收
+     */
+    private static final class ReconnectExecutorHolder {
+
+        private static final ScheduledThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private static ScheduledThreadPoolExecutor createExecutor() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, new TaskThreadFactory("tars-reconnect-"));
+            executor.setRemoveOnCancelPolicy(true);
+            executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * 一个连接上的合并发送. 请求先入队, 抢到发送权的线程把队列中的请求合并发送, 直到队列为空.
+     * 单独一个请求时仍按普通请求包发送, 不增加等待时间
+     */
+    private final class BatchWriter {
+
+        private final Session session;
+        //服务端是否支持批量请求, null表示尚未确定
+        private volatile Boolean supported;
+        private final Queue<ServantRequest> queue = new ConcurrentLinkedQueue<ServantRequest>();
+        private final AtomicBoolean writing = new AtomicBoolean(false);
+
+        BatchWriter(Session session) {
+            this.session = session;
+        }
+
+        void write(ServantRequest request) {
+            queue.offer(request);
+            while (!queue.isEmpty() && writing.compareAndSet(false, true)) {
+                try {
+                    flush();
+                } finally {
+                    writing.set(false);
+                }
+            }
+        }
+
+        private void flush() {
+            List<ServantRequest> batch = new ArrayList<ServantRequest>();
+            while (true) {
+                ServantRequest request;
+                while (batch.size() < maxBatchSize && (request = queue.poll()) != null) {
+                    batch.add(request);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                try {
+                    if (batch.size() == 1) {
+                        session.write(batch.get(0));
+                    } else {
+                        session.write(batch.get(0).newBatchRequest(batch));
+                        batchWrites.incrementAndGet();
+                        batchedRequests.addAndGet(batch.size());
+                    }
+                } catch (IOException e) {
+                    ClientLogger.getLogger().error("failed to write " + batch.size() + " requests|" + getAddress(), e);
+                    fail(batch);
+                }
+                batch.clear();
+            }
+        }
+
+        /**
+         * 发送失败的请求立即结束, 同步调用得到失败的结果, 异步调用收到异常回调
+         */
+        private void fail(List<ServantRequest> batch) {
+            for (ServantRequest request : batch) {
+                Ticket<Object> ticket = TicketManager.getTicket(request.getTicketNumber());
+                if (ticket == null) {
+                    continue;
+                }
+                TicketManager.removeTicket(ticket.getTicketNumber());
+                if (ticket.getCallback() != null) {
+                    ticket.getCallback().onException(new IOException("failed to write request|" + getAddress()));
+                }
+                ticket.countDown();
+            }
+        }
+    }
+
+    /**
+     * 在响应、超时或发送失败时归还在途请求名额, 只归还一次
+     */
+    private final class InFlightCallback<T> implements Callback<T> {
+
+        private final Callback<T> callback;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        InFlightCallback(Callback<T> callback) {
+            this.callback = callback;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                releaseInFlight();
+            }
+        }
+
+        public void onCompleted(T result) {
+            release();
+            onResponse(result);
+            if (callback != null) {
+                callback.onCompleted(result);
+            }
+        }
+
+        public void onException(Throwable ex) {
+            release();
+            if (callback != null) {
+                callback.onException(ex);
+            }
+        }
+
+        public void onExpired() {
+            release();
+            if (callback != null) {
+                callback.onExpired();
+            }
+        }
+    }
 }
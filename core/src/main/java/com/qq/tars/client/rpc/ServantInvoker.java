@@ -16,6 +16,10 @@
 
 package com.qq.tars.client.rpc;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -33,7 +37,14 @@ public abstract class ServantInvoker<T> extends AbstractInvoker<T> {
 
     protected final String objName;
     protected final ServantProxyConfig config;
-    protected final ServantClient[] clients;
+    //连接数可在运行时调整, 使用时先读取到局部变量
+    protected volatile ServantClient[] clients;
+    //已移出轮询的连接及其移出时间, 在途请求结束后再关闭
+    private final Map<ServantClient, Long> retiredClients = new ConcurrentHashMap<ServantClient, Long>();
+    //连续空闲的检查轮数, 只在连接数调整线程中访问
+    int idleRounds = 0;
+    //连接已转交给参数更新后的新invoker, 销毁时不再关闭
+    private volatile boolean transferred = false;
     protected final AtomicInteger index = new AtomicInteger();
     protected final ReentrantLock destroyLock = new ReentrantLock();
 
@@ -50,6 +61,121 @@ public abstract class ServantInvoker<T> extends AbstractInvoker<T> {
 
     protected abstract Object doInvokeServant(final ServantInvokeContext inv) throws Throwable;
 
+    public ServantClient[] getClients() {
+        return clients;
+    }
+
+    /**
+     * 增加一个连接, invoker已销毁时返回false, 由调用方关闭该连接
+     */
+    boolean addClient(ServantClient client) {
+        destroyLock.lock();
+        try {
+            if (super.isDestroyed() || transferred) {
+                return false;
+            }
+            ServantClient[] current = clients;
+            ServantClient[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = client;
+            clients = next;
+            return true;
+        } finally {
+            destroyLock.unlock();
+        }
+    }
+
+    /**
+     * 将连接移出轮询, 不直接关闭以免中断其上的在途请求
+     */
+    boolean retireClient(ServantClient client) {
+        destroyLock.lock();
+        try {
+            ServantClient[] current = clients;
+            if (super.isDestroyed() || transferred || current.length <= 1) {
+                return false;
+            }
+            ServantClient[] next = new ServantClient[current.length - 1];
+            int j = 0;
+            for (ServantClient c : current) {
+                if (c == client) {
+                    continue;
+                }
+                if (j == next.length) {
+                    return false;
+                }
+                next[j++] = c;
+            }
+            clients = next;
+            retiredClients.put(client, System.currentTimeMillis());
+            return true;
+        } finally {
+            destroyLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭已没有在途请求或已超过等待时间的移出连接
+     * @param graceMillis 在途请求的最长等待时间
+     */
+    void closeRetiredClients(long graceMillis) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<ServantClient, Long>> it = retiredClients.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ServantClient, Long> entry = it.next();
+            ServantClient client = entry.getKey();
+            if (client.getInFlight() > 0 && now - entry.getValue() < graceMillis) {
+                continue;
+            }
+            it.remove();
+            closeClient(client);
+        }
+    }
+
+    /**
+     * 所有连接上的在途请求数
+     */
+    public int getInFlight() {
+        int inFlight = 0;
+        for (ServantClient client : clients) {
+            inFlight += client.getInFlight();
+        }
+        return inFlight;
+    }
+
+    /**
+     * 节点权重等参数变化时, 将连接转交给新的invoker, 避免重连
+     * 转交后本invoker仍可处理已选中的请求, 销毁时不再关闭这些连接
+     * @return 已销毁或已转交时返回null
+     */
+    ServantClient[] transferClients() {
+        destroyLock.lock();
+        try {
+            if (super.isDestroyed() || transferred) {
+                return null;
+            }
+            transferred = true;
+            return clients;
+        } finally {
+            destroyLock.unlock();
+        }
+    }
+
+    /**
+     * 接管原invoker中等待关闭的连接
+     */
+    void inheritRetiredClients(ServantInvoker<?> from) {
+        for (ServantClient client : from.retiredClients.keySet()) {
+            Long retiredTime = from.retiredClients.remove(client);
+            if (retiredTime != null) {
+                retiredClients.put(client, retiredTime);
+            }
+        }
+    }
+
+    boolean isTransferred() {
+        return transferred;
+    }
+
     public void destroy() {
         if (super.isDestroyed()) {
             return;
@@ -60,17 +186,28 @@ public abstract class ServantInvoker<T> extends AbstractInvoker<T> {
                 return;
             }
             super.destroy();
+            if (transferred) {
+                return;
+            }
             for (ServantClient client : clients) {
-                try {
-                    ClientLogger.getLogger().info("try to close client " + client);
-                    client.close();
-                    ClientLogger.getLogger().info("closed client " + client);
-                } catch (Throwable t) {
-                    ClientLogger.getLogger().error("error in close " + client, t);
-                }
+                closeClient(client);
+            }
+            for (ServantClient client : retiredClients.keySet()) {
+                closeClient(client);
             }
+            retiredClients.clear();
         } finally {
             destroyLock.unlock();
         }
     }
+
+    private void closeClient(ServantClient client) {
+        try {
+            ClientLogger.getLogger().info("try to close client " + client);
+            client.close();
+            ClientLogger.getLogger().info("closed client " + client);
+        } catch (Throwable t) {
+            ClientLogger.getLogger().error("error in close " + client, t);
+        }
+    }
 }
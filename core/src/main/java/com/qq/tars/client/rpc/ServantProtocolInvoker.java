@@ -20,13 +20,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.qq.tars.client.ServantProxyConfig;
 import com.qq.tars.client.support.ClientPoolManager;
 import com.qq.tars.client.util.ClientLogger;
 import com.qq.tars.client.util.ParseTools;
+import com.qq.tars.common.support.ScheduledExecutorManager;
 import com.qq.tars.common.util.Constants;
 import com.qq.tars.net.core.nio.SelectorManager;
 import com.qq.tars.net.protocol.ProtocolFactory;
@@ -38,12 +46,31 @@ import com.qq.tars.rpc.exc.ClientException;
 
 public abstract class ServantProtocolInvoker<T> implements ProtocolInvoker<T> {
 
+    //未限制在途请求数时, 每个连接的平均在途请求数超过该值则扩容
+    private static final int GROW_INFLIGHT = 32;
+    //任一连接的待写数据包超过该值则扩容
+    private static final int GROW_BACKLOG = 8;
+    //平均在途请求数低于该值时视为空闲
+    private static final int IDLE_INFLIGHT = 2;
+    //连续空闲的检查轮数超过该值才回收一个连接
+    private static final int IDLE_ROUNDS = 12;
+    //下线invoker的在途请求检查间隔
+    private static final int DRAIN_INTERVAL = 1000;
+    //只有这些参数变化时复用原连接
+    private static final String[] REUSABLE_PARAMETERS = {Constants.TARS_CLIENT_WEIGHT_TYPE, Constants.TARS_CLIENT_WEIGHT, Constants.TARS_CLIENT_SETDIVISION};
+
     protected final Class<T> api;
     protected final ServantProxyConfig servantProxyConfig;
     protected final ThreadPoolExecutor threadPoolExecutor;
     protected final ProtocolFactory protocolFactory;
     protected volatile SelectorManager selectorManager = null;
     protected final ConcurrentHashSet<Invoker<T>> allInvoker = new ConcurrentHashSet<Invoker<T>>();
+    //已下线, 等待在途请求结束后关闭的invoker及其下线时间
+    private final Map<Invoker<T>, Long> retiringInvokers = new ConcurrentHashMap<Invoker<T>, Long>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    //刷新invoker与连接的增加/移出互斥, 保证连接转交时连接列表不变, 建连在锁外进行
+    private final Object invokerLock = new Object();
+    private ScheduledFuture<?> connectionAdjustFuture;
 
     public ServantProtocolInvoker(Class<T> api, ServantProxyConfig config, ProtocolFactory protocolFactory,
                                   ThreadPoolExecutor threadPoolExecutor) {
@@ -52,6 +79,10 @@ public abstract class ServantProtocolInvoker<T> implements ProtocolInvoker<T> {
         this.threadPoolExecutor = threadPoolExecutor;
         this.protocolFactory = protocolFactory;
         this.initInvoker();
+        if (config.getMaxConnections() > config.getConnections()) {
+            int interval = Constants.default_connection_adjust_interval;
+            this.connectionAdjustFuture = ScheduledExecutorManager.getInstance().scheduleAtFixedRate(new ConnectionAdjuster(), interval, interval, TimeUnit.MILLISECONDS);
+        }
     }
 
     public abstract Invoker<T> create(Class<T> api, Url url) throws Exception;
@@ -61,18 +92,149 @@ public abstract class ServantProtocolInvoker<T> implements ProtocolInvoker<T> {
     }
 
     public void destroy() {
+        if (connectionAdjustFuture != null) {
+            connectionAdjustFuture.cancel(false);
+        }
         destroy(allInvoker);
+        List<Invoker<T>> retiring = new ArrayList<Invoker<T>>(retiringInvokers.keySet());
+        retiringInvokers.clear();
+        destroy(retiring);
         this.selectorManager.stop();
     }
 
+    /**
+     * 按节点差异更新invoker: 未变化的保留连接, 权重等参数变化的复用连接, 移除的等在途请求结束后再关闭
+     */
     public void refresh() {
         ClientLogger.getLogger().info("try to refresh " + servantProxyConfig.getSimpleObjectName());
-        List<Invoker<T>> invokers = new ArrayList<Invoker<T>>();
-        for (Invoker<T> invoker : allInvoker) {
-            invokers.add(invoker);
+        Map<String, Url> urls = new LinkedHashMap<String, Url>();
+        try {
+            for (Url url : ParseTools.parse(servantProxyConfig)) {
+                if (url.getParameter(Constants.TARS_CLIENT_ACTIVE, false)) {
+                    urls.put(url.toIdentityString(), url);
+                } else {
+                    ClientLogger.getLogger().info("inactive invoker can`t to init|" + url.toIdentityString());
+                }
+            }
+        } catch (Throwable t) {
+            ClientLogger.getLogger().error("error occurred on refresh invoker|" + servantProxyConfig.getObjectName(), t);
+            return;
         }
-        this.initInvoker();
-        destroy(invokers);
+
+        synchronized (invokerLock) {
+            Map<String, Invoker<T>> current = new HashMap<String, Invoker<T>>();
+            List<Invoker<T>> removed = new ArrayList<Invoker<T>>();
+            for (Invoker<T> invoker : allInvoker) {
+                String identity = invoker.getUrl().toIdentityString();
+                if (!urls.containsKey(identity) || current.containsKey(identity)) {
+                    removed.add(invoker);
+                } else {
+                    current.put(identity, invoker);
+                }
+            }
+
+            int added = 0, changed = 0;
+            for (Url url : urls.values()) {
+                Invoker<T> old = current.get(url.toIdentityString());
+                if (old != null && old.getUrl().equals(url)) {
+                    continue;
+                }
+                try {
+                    Invoker<T> invoker = old == null ? null : recreate(old, url);
+                    if (invoker == null) {
+                        invoker = create(api, url);
+                    }
+                    //先加入新invoker再移除旧invoker, 刷新过程中不会出现空列表
+                    allInvoker.add(invoker);
+                    if (old == null) {
+                        added++;
+                    } else {
+                        changed++;
+                        removed.add(old);
+                    }
+                } catch (Throwable e) {
+                    ClientLogger.getLogger().error("error occurred on init invoker|" + url.toIdentityString(), e);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            for (Invoker<T> invoker : removed) {
+                allInvoker.remove(invoker);
+                retiringInvokers.put(invoker, now);
+            }
+            ClientLogger.getLogger().info("refresh invoker|" + servantProxyConfig.getSimpleObjectName() + "|added=" + added + "|changed=" + changed + "|removed=" + (removed.size() - changed) + "|total=" + allInvoker.size());
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * 使用已有连接创建invoker, 不支持时返回null
+     */
+    protected Invoker<T> create(Class<T> api, Url url, ServantClient[] clients) throws Exception {
+        return null;
+    }
+
+    /**
+     * 节点只有权重等参数变化时, 将原invoker的连接转交给新invoker
+     */
+    @SuppressWarnings("unchecked")
+    private Invoker<T> recreate(Invoker<T> old, Url url) throws Exception {
+        if (!(old instanceof ServantInvoker) || !isSameConnection(old.getUrl(), url)) {
+            return null;
+        }
+        ServantInvoker<T> oldInvoker = (ServantInvoker<T>) old;
+        Invoker<T> invoker = create(api, url, oldInvoker.getClients());
+        if (!(invoker instanceof ServantInvoker)) {
+            return null;
+        }
+        if (oldInvoker.transferClients() == null) {
+            //原invoker已销毁, 连接已关闭
+            invoker.destroy();
+            return null;
+        }
+        ((ServantInvoker<T>) invoker).inheritRetiredClients(oldInvoker);
+        return invoker;
+    }
+
+    private static boolean isSameConnection(Url oldUrl, Url url) {
+        Map<String, String> oldParameters = new HashMap<String, String>(oldUrl.getParameters());
+        Map<String, String> parameters = new HashMap<String, String>(url.getParameters());
+        for (String key : REUSABLE_PARAMETERS) {
+            oldParameters.remove(key);
+            parameters.remove(key);
+        }
+        return oldParameters.equals(parameters);
+    }
+
+    private void scheduleDrain() {
+        if (!retiringInvokers.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+            ScheduledExecutorManager.getInstance().schedule(new InvokerDrainer(), DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 关闭在途请求已结束或已超过等待时间的下线invoker
+     */
+    @SuppressWarnings("unchecked")
+    private void closeDrainedInvokers() {
+        long grace = Math.max(servantProxyConfig.getSyncTimeout(), servantProxyConfig.getAsyncTimeout());
+        long now = System.currentTimeMillis();
+        List<Invoker<T>> drained = new ArrayList<Invoker<T>>();
+        for (Map.Entry<Invoker<T>, Long> entry : retiringInvokers.entrySet()) {
+            Invoker<T> invoker = entry.getKey();
+            boolean idle = false;
+            if (invoker instanceof ServantInvoker) {
+                ServantInvoker<T> servantInvoker = (ServantInvoker<T>) invoker;
+                idle = servantInvoker.isTransferred() || servantInvoker.getInFlight() == 0;
+            }
+            if (idle || now - entry.getValue() >= grace) {
+                drained.add(invoker);
+            }
+        }
+        for (Invoker<T> invoker : drained) {
+            retiringInvokers.remove(invoker);
+        }
+        destroy(drained);
     }
 
     protected ServantClient[] getClients(Url url) throws IOException {
@@ -80,6 +242,8 @@ public abstract class ServantProtocolInvoker<T> implements ProtocolInvoker<T> {
         ServantClient[] clients = new ServantClient[connections];
         for (int i = 0; i < clients.length; i++) {
             clients[i] = initClient(url);
+            //创建时即在后台建连, 避免首批调用同步承担建连耗时
+            clients[i].connectInBackground();
         }
         return clients;
     }
@@ -92,6 +256,8 @@ public abstract class ServantProtocolInvoker<T> implements ProtocolInvoker<T> {
             long syncTimeout = url.getParameter(Constants.TARS_CLIENT_SYNCTIMEOUT, Constants.default_sync_timeout);
             long asyncTimeout = url.getParameter(Constants.TARS_CLIENT_ASYNCTIMEOUT, Constants.default_async_timeout);
             boolean udpMode = url.getParameter(Constants.TARS_CLIENT_UDPMODE, false);
+            int maxInFlight = url.getParameter(Constants.TARS_CLIENT_MAXINFLIGHT, Constants.default_max_inflight);
+            int maxBatchSize = url.getParameter(Constants.TARS_CLIENT_MAXBATCHSIZE, Constants.default_max_batch_size);
 
             if (this.selectorManager == null) {
                 this.selectorManager = ClientPoolManager.getSelectorManager(this.protocolFactory, this.threadPoolExecutor, true, udpMode, this.servantProxyConfig);
@@ -102,6 +268,8 @@ public abstract class ServantProtocolInvoker<T> implements ProtocolInvoker<T> {
             client.setSyncTimeout(syncTimeout);
             client.setAsyncTimeout(asyncTimeout);
             client.setTcpNoDelay(tcpNoDelay);
+            client.setMaxInFlight(maxInFlight);
+            client.setMaxBatchSize(maxBatchSize);
         } catch (Throwable e) {
             throw new ClientException(servantProxyConfig.getSimpleObjectName(), "Fail to create client|" + url.toIdentityString() + "|" + e.getLocalizedMessage(), e);
         }
@@ -134,6 +302,119 @@ public abstract class ServantProtocolInvoker<T> implements ProtocolInvoker<T> {
         }
     }
 
+    /**
+     * 根据在途请求数和待写积压调整单个节点的连接数, 每轮最多增加或回收一个连接
+     */
+    protected void adjustConnections(ServantInvoker<T> invoker) {
+        Url url = invoker.getUrl();
+        int minConnections = Math.max(url.getParameter(Constants.TARS_CLIENT_CONNECTIONS, Constants.default_connections), 1);
+        int maxConnections = url.getParameter(Constants.TARS_CLIENT_MAXCONNECTIONS, Constants.default_max_connections);
+        long grace = Math.max(servantProxyConfig.getSyncTimeout(), servantProxyConfig.getAsyncTimeout());
+        synchronized (invokerLock) {
+            invoker.closeRetiredClients(grace);
+        }
+        if (maxConnections <= minConnections || !invoker.isAvailable()) {
+            return;
+        }
+
+        ServantClient[] clients = invoker.getClients();
+        int totalInFlight = 0, maxBacklog = 0;
+        ServantClient idlest = null;
+        for (ServantClient client : clients) {
+            int inFlight = client.getInFlight();
+            totalInFlight += inFlight;
+            maxBacklog = Math.max(maxBacklog, client.getWriteBacklog());
+            if (idlest == null || inFlight < idlest.getInFlight()) {
+                idlest = client;
+            }
+        }
+        int maxInFlight = url.getParameter(Constants.TARS_CLIENT_MAXINFLIGHT, Constants.default_max_inflight);
+        int growInFlight = maxInFlight > 0 ? Math.max(maxInFlight / 2, 1) : GROW_INFLIGHT;
+        int avgInFlight = totalInFlight / clients.length;
+
+        if (clients.length < maxConnections && (avgInFlight >= growInFlight || maxBacklog >= GROW_BACKLOG)) {
+            invoker.idleRounds = 0;
+            //在锁外建连, 避免节点刷新等待建连超时
+            ServantClient client = initClient(url);
+            try {
+                client.ensureConnected();
+            } catch (Throwable t) {
+                ClientLogger.getLogger().error("error occurred on grow connections|" + url.toIdentityString(), t);
+                closeQuietly(client);
+                return;
+            }
+            boolean added;
+            synchronized (invokerLock) {
+                //建连期间invoker可能已被刷新移除或已转交连接
+                added = allInvoker.contains(invoker) && invoker.addClient(client);
+            }
+            if (added) {
+                ClientLogger.getLogger().info("grow connections|" + url.toIdentityString() + "|connections=" + (clients.length + 1) + "|inFlight=" + totalInFlight + "|backlog=" + maxBacklog);
+            } else {
+                closeQuietly(client);
+            }
+        } else if (clients.length > minConnections && avgInFlight < IDLE_INFLIGHT && maxBacklog == 0) {
+            if (++invoker.idleRounds < IDLE_ROUNDS) {
+                return;
+            }
+            invoker.idleRounds = 0;
+            boolean retired;
+            synchronized (invokerLock) {
+                retired = invoker.retireClient(idlest);
+            }
+            if (retired) {
+                ClientLogger.getLogger().info("shrink connections|" + url.toIdentityString() + "|connections=" + (clients.length - 1) + "|inFlight=" + totalInFlight);
+            }
+        } else {
+            invoker.idleRounds = 0;
+        }
+    }
+
+    private void closeQuietly(ServantClient client) {
+        try {
+            client.close();
+        } catch (Throwable t) {
+            ClientLogger.getLogger().error("error in close " + client, t);
+        }
+    }
+
+    /**
+     * 定时调整各节点的连接数
+     */
+    private class ConnectionAdjuster implements Runnable {
+
+        @SuppressWarnings("unchecked")
+        public void run() {
+            for (Invoker<T> invoker : allInvoker) {
+                if (!(invoker instanceof ServantInvoker) || ((ServantInvoker<T>) invoker).isDestroyed()) {
+                    continue;
+                }
+                try {
+                    adjustConnections((ServantInvoker<T>) invoker);
+                } catch (Throwable t) {
+                    ClientLogger.getLogger().error("error occurred on adjust connections|" + invoker, t);
+                }
+            }
+        }
+    }
+
+    /**
+     * 定时检查下线invoker, 未全部关闭前继续调度
+     */
+    private class InvokerDrainer implements Runnable {
+
+        public void run() {
+            drainScheduled.set(false);
+            try {
+                closeDrainedInvokers();
+            } catch (Throwable t) {
+                ClientLogger.getLogger().error("error occurred on close retired invokers|" + servantProxyConfig.getSimpleObjectName(), t);
+            } finally {
+                scheduleDrain();
+            }
+        }
+    }
+
     private void destroy(Collection<Invoker<T>> invokers) {
         for (Invoker<?> invoker : invokers) {
             if (invoker != null) {
@@ -126,9 +126,14 @@ public class ConsistentHashLoadBalance<T> implements LoadBalance<T> {
 
         List<Invoker<T>> sortedInvokersTmp = new ArrayList<Invoker<T>>(invokers);
         Collections.sort(sortedInvokersTmp, comparator);
+        if (LoadBalanceHelper.isSameInvokers(sortedInvokersCache, sortedInvokersTmp)) {
+            ClientLogger.getLogger().info(config.getSimpleObjectName() + " ConsistentHashLoadBalance's invokers unchanged, skip refresh");
+            return;
+        }
 
+        //只增删变化的节点, 未变化节点在hash环上的位置保持不变
+        conHashInvokersCache = LoadBalanceHelper.updateConsistentHashCircle(conHashInvokersCache, sortedInvokersCache, sortedInvokersTmp, config);
         sortedInvokersCache = sortedInvokersTmp;
-        conHashInvokersCache = LoadBalanceHelper.buildConsistentHashCircle(sortedInvokersTmp, config);
 
         ClientLogger.getLogger().info(config.getSimpleObjectName() + " refresh ConsistentHashLoadBalance's invoker cache done, conHashInvokersCache size=" + (conHashInvokersCache == null || conHashInvokersCache.isEmpty() ? 0 : conHashInvokersCache.size()) + ", sortedInvokersCache size=" + (sortedInvokersCache == null || sortedInvokersCache.isEmpty() ? 0 : sortedInvokersCache.size()));
     }
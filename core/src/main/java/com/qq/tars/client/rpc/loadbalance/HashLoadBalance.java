@@ -113,6 +113,10 @@ public class HashLoadBalance<T> implements LoadBalance<T> {
 
         List<Invoker<T>> sortedInvokersTmp = new ArrayList<Invoker<T>>(invokers);
         Collections.sort(sortedInvokersTmp, comparator);
+        if (LoadBalanceHelper.isSameInvokers(sortedInvokersCache, sortedInvokersTmp)) {
+            ClientLogger.getLogger().info(config.getSimpleObjectName() + " HashLoadBalance's invokers unchanged, skip refresh");
+            return;
+        }
 
         sortedInvokersCache = sortedInvokersTmp;
         staticWeightInvokersCache = LoadBalanceHelper.buildStaticWeightList(sortedInvokersTmp, config);
@@ -111,16 +111,25 @@ public class LoadBalanceHelper {
         }
     }
 
-    public static <T> TreeMap<Long, Invoker<T>> buildConsistentHashCircle(Collection<Invoker<T>> invokers,
-                                                                          ServantProxyConfig config) {
-        List<Invoker<T>> weightInvokers = new ArrayList<Invoker<T>>();
-        for (Invoker<T> invoker : invokers) {
-            if (invoker.getUrl().getParameter(Constants.TARS_CLIENT_WEIGHT_TYPE, 0) != 1) {
-                weightInvokers.clear();
-                break;
+    /**
+     * 排序后的invoker列表与缓存一致时无需重建负载均衡缓存
+     * 节点权重等参数变化时会生成新的invoker, 按引用比较即可
+     */
+    public static <T> boolean isSameInvokers(List<Invoker<T>> cached, List<Invoker<T>> sorted) {
+        if (cached == null || cached.size() != sorted.size()) {
+            return false;
+        }
+        for (int i = 0; i < sorted.size(); i++) {
+            if (cached.get(i) != sorted.get(i)) {
+                return false;
             }
-            if (invoker.getUrl().getParameter(Constants.TARS_CLIENT_WEIGHT, 0) > 0) weightInvokers.add(invoker);
         }
+        return true;
+    }
+
+    public static <T> TreeMap<Long, Invoker<T>> buildConsistentHashCircle(Collection<Invoker<T>> invokers,
+                                                                          ServantProxyConfig config) {
+        List<Invoker<T>> weightInvokers = getConHashWeightInvokers(invokers);
 
         TreeMap<Long, Invoker<T>> result = new TreeMap<Long, Invoker<T>>();
         try {
@@ -129,17 +138,7 @@ public class LoadBalanceHelper {
 
             for (Invoker<T> invoker : srcInvokers) {
                 int replicaNumber = staticWeight ? invoker.getUrl().getParameter(Constants.TARS_CLIENT_WEIGHT, 0) : config.getDefaultConHashVirtualNodes();
-                if (replicaNumber > config.getDefaultConHashVirtualNodes())
-                    replicaNumber = config.getDefaultConHashVirtualNodes();
-
-                replicaNumber = replicaNumber / 4 <= 0 ? 1 : replicaNumber / 4;
-                for (int i = 0; i < replicaNumber; i++) {
-                    byte[] digest = md5(invoker.getUrl().toIdentityString() + i);
-                    for (int h = 0; h < 4; h++) {
-                        long m = hash(digest, h);
-                        result.put(m, invoker);
-                    }
-                }
+                putConHashNodes(result, invoker, replicaNumber, config);
             }
 
 //            if (ClientLogger.getLogger().isDebugEnabled()) {
@@ -156,6 +155,67 @@ public class LoadBalanceHelper {
         return result;
     }
 
+    /**
+     * 增量更新一致性hash环, 只移除下线节点和加入新增节点, 其余节点的位置不变
+     * 静态权重模式下虚拟节点数与权重相关, 仍全量重建
+     */
+    public static <T> TreeMap<Long, Invoker<T>> updateConsistentHashCircle(TreeMap<Long, Invoker<T>> circle, Collection<Invoker<T>> oldInvokers,
+                                                                           Collection<Invoker<T>> invokers, ServantProxyConfig config) {
+        if (circle == null || oldInvokers == null || !getConHashWeightInvokers(oldInvokers).isEmpty()
+                || !getConHashWeightInvokers(invokers).isEmpty()) {
+            return buildConsistentHashCircle(invokers, config);
+        }
+        Set<Invoker<T>> oldSet = new HashSet<Invoker<T>>(oldInvokers);
+        Set<Invoker<T>> newSet = new HashSet<Invoker<T>>(invokers);
+
+        TreeMap<Long, Invoker<T>> result = new TreeMap<Long, Invoker<T>>(circle);
+        try {
+            for (Iterator<Invoker<T>> it = result.values().iterator(); it.hasNext(); ) {
+                if (!newSet.contains(it.next())) {
+                    it.remove();
+                }
+            }
+            for (Invoker<T> invoker : invokers) {
+                if (!oldSet.contains(invoker)) {
+                    putConHashNodes(result, invoker, config.getDefaultConHashVirtualNodes(), config);
+                }
+            }
+        } catch (Exception e) {
+            ClientLogger.getLogger().error("update consistent hash circle err. ", e);
+            return buildConsistentHashCircle(invokers, config);
+        }
+        return result;
+    }
+
+    /**
+     * 所有节点都是静态权重时返回权重大于0的节点, 否则返回空列表
+     */
+    private static <T> List<Invoker<T>> getConHashWeightInvokers(Collection<Invoker<T>> invokers) {
+        List<Invoker<T>> weightInvokers = new ArrayList<Invoker<T>>();
+        for (Invoker<T> invoker : invokers) {
+            if (invoker.getUrl().getParameter(Constants.TARS_CLIENT_WEIGHT_TYPE, 0) != 1) {
+                weightInvokers.clear();
+                break;
+            }
+            if (invoker.getUrl().getParameter(Constants.TARS_CLIENT_WEIGHT, 0) > 0) weightInvokers.add(invoker);
+        }
+        return weightInvokers;
+    }
+
+    private static <T> void putConHashNodes(TreeMap<Long, Invoker<T>> circle, Invoker<T> invoker, int replicaNumber, ServantProxyConfig config) {
+        if (replicaNumber > config.getDefaultConHashVirtualNodes())
+            replicaNumber = config.getDefaultConHashVirtualNodes();
+
+        replicaNumber = replicaNumber / 4 <= 0 ? 1 : replicaNumber / 4;
+        for (int i = 0; i < replicaNumber; i++) {
+            byte[] digest = md5(invoker.getUrl().toIdentityString() + i);
+            for (int h = 0; h < 4; h++) {
+                long m = hash(digest, h);
+                circle.put(m, invoker);
+            }
+        }
+    }
+
     private static byte[] md5(String value) {
         MessageDigest md5;
         try {
@@ -118,7 +118,11 @@ public class RoundRobinLoadBalance<T> implements LoadBalance<T> {
 
         List<Invoker<T>> sortedInvokersTmp = new ArrayList<Invoker<T>>(invokers);
         Collections.sort(sortedInvokersTmp, comparator);
-        
+        if (LoadBalanceHelper.isSameInvokers(sortedInvokersCache, sortedInvokersTmp)) {
+            ClientLogger.getLogger().info(config.getSimpleObjectName() + " RoundRobinLoadBalance's invokers unchanged, skip refresh");
+            return;
+        }
+
         sortedInvokersCache = sortedInvokersTmp;
         staticWeightInvokersCache = LoadBalanceHelper.buildStaticWeightList(sortedInvokersTmp, config);
 
@@ -39,22 +39,7 @@ public class TarsCallbackFilterChain extends AbstractFilterChain<Callback<TarsSe
 		if (request instanceof TarsServantRequest) {
 			TarsServantResponse tarsServantResponse = (TarsServantResponse)response;
 			if (expireFlag == 0) {
-				try {
-		            if (tarsServantResponse.getCause() != null) {
-		                throw new TarsException(tarsServantResponse.getCause());
-		            }
-		            if (tarsServantResponse.getRet() != TarsHelper.SERVERSUCCESS) {
-		                throw ServerException.makeException(tarsServantResponse.getRet());
-		            }
-		            if (target != null) {
-		                this.target.onCompleted(tarsServantResponse);
-		            }
-		        } catch (Throwable ex) {
-		        	if (target != null) {
-		        		target.onException(ex);
-		        	}
-		            throw ex;
-		        }
+				onCompleted(target, tarsServantResponse);
 			} else if (expireFlag == 1) {
 	            if (target != null) {
 	                this.target.onExpired();
@@ -64,4 +49,29 @@ public class TarsCallbackFilterChain extends AbstractFilterChain<Callback<TarsSe
 		
 	}
 
+	/**
+	 * 回调业务callback, 未配置过滤器时直接调用
+	 * @param callback
+	 * @param response
+	 * @throws Throwable
+	 */
+	static void onCompleted(Callback<TarsServantResponse> callback, TarsServantResponse response) throws Throwable {
+		try {
+			if (response.getCause() != null) {
+				throw new TarsException(response.getCause());
+			}
+			if (response.getRet() != TarsHelper.SERVERSUCCESS) {
+				throw ServerException.makeException(response.getRet());
+			}
+			if (callback != null) {
+				callback.onCompleted(response);
+			}
+		} catch (Throwable ex) {
+			if (callback != null) {
+				callback.onException(ex);
+			}
+			throw ex;
+		}
+	}
+
 }
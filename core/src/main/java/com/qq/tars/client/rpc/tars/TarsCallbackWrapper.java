@@ -49,7 +49,6 @@ public class TarsCallbackWrapper implements Callback<TarsServantResponse> {
     private final TarsServantRequest request;
     private final TarsInvoker invoker;
     private final Callback<TarsServantResponse> callback;
-    private List<Filter> filters;
 
     public TarsCallbackWrapper(ServantProxyConfig config, String methodName, String remoteIp, int remotePort,
                                long bornTime, TarsServantRequest request, Callback<TarsServantResponse> callback, TarsInvoker invoker) {
@@ -62,7 +61,6 @@ public class TarsCallbackWrapper implements Callback<TarsServantResponse> {
         this.remotePort = remotePort;
         this.bornTime = bornTime;
         this.request = request;
-        this.filters = AppContextManager.getInstance().getAppContext() == null ? null : AppContextManager.getInstance().getAppContext().getFilters(FilterKind.CALLBACK);
         this.invoker = invoker;
     }
 
@@ -73,8 +71,13 @@ public class TarsCallbackWrapper implements Callback<TarsServantResponse> {
         invoker.setAvailable(available);
         try {
             beforeCallback();
-            FilterChain filterChain = new TarsCallbackFilterChain(filters, objName, FilterKind.CALLBACK, callback, 0);
-            filterChain.doFilter(request, response);
+            List<Filter> filters = AppContextManager.getInstance().getFilters(FilterKind.CALLBACK);
+            if (filters.isEmpty()) {
+                TarsCallbackFilterChain.onCompleted(callback, response);
+            } else {
+                FilterChain filterChain = new TarsCallbackFilterChain(filters, objName, FilterKind.CALLBACK, callback, 0);
+                filterChain.doFilter(request, response);
+            }
         } catch (Throwable ex) {
             ret = Constants.INVOKE_STATUS_EXEC;
             ClientLogger.getLogger().error("error occurred on callback completed", ex);
@@ -100,12 +103,19 @@ public class TarsCallbackWrapper implements Callback<TarsServantResponse> {
         invoker.setAvailable(ServantnvokerAliveChecker.isAlive(invoker.getUrl(), config, ret));
         try {
             beforeCallback();
-            FilterChain filterChain = new TarsCallbackFilterChain(filters, objName, FilterKind.CALLBACK, callback, 1);
-            TarsServantResponse response = new TarsServantResponse(request.getIoSession());
-            response.setRequest(request);
-            response.setTicketNumber(request.getTicketNumber());
-            response.setCause(new TimeoutException("async call timeout"));
-            filterChain.doFilter(request, response);
+            List<Filter> filters = AppContextManager.getInstance().getFilters(FilterKind.CALLBACK);
+            if (filters.isEmpty()) {
+                if (callback != null) {
+                    callback.onExpired();
+                }
+            } else {
+                FilterChain filterChain = new TarsCallbackFilterChain(filters, objName, FilterKind.CALLBACK, callback, 1);
+                TarsServantResponse response = new TarsServantResponse(request.getIoSession());
+                response.setRequest(request);
+                response.setTicketNumber(request.getTicketNumber());
+                response.setCause(new TimeoutException("async call timeout"));
+                filterChain.doFilter(request, response);
+            }
         } catch (Throwable ex) {
             ClientLogger.getLogger().error("error occurred on callback expired", ex);
         } finally {
@@ -7,7 +7,6 @@ import com.qq.tars.client.rpc.ServantClient;
 import com.qq.tars.common.AbstractFilterChain;
 import com.qq.tars.common.Filter;
 import com.qq.tars.common.FilterKind;
-import com.qq.tars.common.util.BeanAccessor;
 import com.qq.tars.net.client.Callback;
 import com.qq.tars.net.core.Request;
 import com.qq.tars.net.core.Response;
@@ -49,16 +48,7 @@ public class TarsClientFilterChain extends AbstractFilterChain<ServantClient> {
 			TarsServantResponse tarsServantResponse = (TarsServantResponse)response;
 			if (type == 0) {
 				//同步调用
-				try {
-					//调用servantClient
-					TarsServantResponse result = target.invokeWithSync((ServantRequest) request);
-					BeanAccessor.setBeanValue(tarsServantResponse, "cause", result.getCause());
-					BeanAccessor.setBeanValue(tarsServantResponse, "result", result.getResult());
-					BeanAccessor.setBeanValue(tarsServantResponse, "ret", result.getRet());
-				} catch (Exception e) {
-					BeanAccessor.setBeanValue(tarsServantResponse, "cause", e);				
-					throw e;
-				}
+				invokeWithSync(target, (ServantRequest) request, tarsServantResponse);
 				return;
 			}
 			if (type == 1) {
@@ -73,4 +63,24 @@ public class TarsClientFilterChain extends AbstractFilterChain<ServantClient> {
 		}
 	}
 
+	/**
+	 * 同步调用servantClient, 并将结果写回response
+	 * @param client
+	 * @param request
+	 * @param response
+	 * @throws Throwable
+	 */
+	static void invokeWithSync(ServantClient client, ServantRequest request, TarsServantResponse response) throws Throwable {
+		try {
+			//调用servantClient
+			TarsServantResponse result = client.invokeWithSync(request);
+			response.setCause(result.getCause());
+			response.setResult(result.getResult());
+			response.setRet(result.getRet());
+		} catch (Exception e) {
+			response.setCause(e);
+			throw e;
+		}
+	}
+
 }
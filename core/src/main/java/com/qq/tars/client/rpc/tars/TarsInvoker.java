@@ -25,6 +25,7 @@ import com.qq.tars.common.Filter;
 import com.qq.tars.common.FilterChain;
 import com.qq.tars.common.FilterKind;
 import com.qq.tars.common.util.Constants;
+import com.qq.tars.common.util.Deadline;
 import com.qq.tars.common.util.DyeingSwitch;
 import com.qq.tars.context.DistributedContext;
 import com.qq.tars.context.DistributedContextManager;
@@ -34,6 +35,7 @@ import com.qq.tars.protocol.tars.support.TarsMethodInfo;
 import com.qq.tars.protocol.tars.support.TarsMethodParameterInfo;
 import com.qq.tars.protocol.util.TarsHelper;
 import com.qq.tars.rpc.common.Url;
+import com.qq.tars.rpc.exc.ClientOverloadException;
 import com.qq.tars.rpc.exc.NotConnectedException;
 import com.qq.tars.rpc.exc.ServerException;
 import com.qq.tars.rpc.exc.TimeoutException;
@@ -43,6 +45,7 @@ import com.qq.tars.rpc.protocol.tars.support.AnalystManager;
 import com.qq.tars.server.core.AppContextManager;
 import com.qq.tars.support.stat.InvokeStatHelper;
 
+import java.io.InterruptedIOException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
@@ -54,15 +57,8 @@ import java.util.Map;
  */
 public class TarsInvoker<T> extends ServantInvoker<T> {
 
-    List<Filter> filters;
-
     public TarsInvoker(ServantProxyConfig config, Class<T> api, Url url, ServantClient[] clients) {
         super(config, api, url, clients);
-
-        //TraceServerFilter
-        //TraceClientFilter
-        //TraceCallbackFilter
-        filters = AppContextManager.getInstance().getAppContext() == null ? null : AppContextManager.getInstance().getAppContext().getFilters(FilterKind.CLIENT);
     }
 
     @Override
@@ -80,14 +76,21 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
         long begin = System.currentTimeMillis();
 
         int ret = Constants.INVOKE_STATUS_SUCC;
+        boolean skipAliveCheck = false;
+        boolean cancelled = false;
         boolean isAsync = TarsHelper.isAsync(inv.getMethodName());
+        //上游请求的剩余时间不足时直接失败, 不发出请求也不计入节点统计
+        int timeout = Deadline.cap(isAsync ? config.getAsyncTimeout() : config.getSyncTimeout());
+        if (timeout <= 0) {
+            throw new TimeoutException("deadline exceeded before invoke|" + objName + "|" + inv.getMethodName());
+        }
         try {
             Method method = getApi().getMethod(inv.getMethodName(), inv.getParameterTypes());
             if (isAsync) {
-                invokeWithAsync(method, inv.getArguments(), inv.getAttachments());
+                invokeWithAsync(method, inv.getArguments(), inv.getAttachments(), timeout);
                 return null;
             } else {
-                TarsServantResponse response = invokeWithSync(method, inv.getArguments(), inv.getAttachments());
+                TarsServantResponse response = invokeWithSync(method, inv.getArguments(), inv.getAttachments(), timeout);
                 ret = response.getRet() == TarsHelper.SERVERSUCCESS ? Constants.INVOKE_STATUS_SUCC : Constants.INVOKE_STATUS_EXEC;
                 if (response.getRet() != TarsHelper.SERVERSUCCESS) {
                     throw ServerException.makeException(response.getRet());
@@ -99,6 +102,15 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
                 ret = Constants.INVOKE_STATUS_TIMEOUT;
             } else if (e instanceof NotConnectedException) {
                 ret = Constants.INVOKE_STATUS_NETCONNECTTIMEOUT;
+            } else if (e instanceof ClientOverloadException) {
+                //本地连接饱和, 不计入服务节点的存活检查
+                skipAliveCheck = true;
+                ret = Constants.INVOKE_STATUS_EXEC;
+            } else if (e instanceof InterruptedIOException) {
+                //调用被主动取消(如对冲中落败的请求), 不计入存活检查和调用统计
+                skipAliveCheck = true;
+                cancelled = true;
+                ret = Constants.INVOKE_STATUS_EXEC;
             } else {
                 ret = Constants.INVOKE_STATUS_EXEC;
             }
@@ -106,15 +118,62 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
         } finally {
             if (!isAsync) {
                 //每次调用结束检查servernode是否可用
-                setAvailable(ServantnvokerAliveChecker.isAlive(getUrl(), config, ret));
+                if (!skipAliveCheck) {
+                    setAvailable(ServantnvokerAliveChecker.isAlive(getUrl(), config, ret));
+                }
                 //每次客户端调用结束 统计数据
-                InvokeStatHelper.getInstance().addProxyStat(objName).addInvokeTimeByClient(config.getMasterName(), config.getSlaveName(), config.getSlaveSetName(), config.getSlaveSetArea(), config.getSlaveSetID(), inv.getMethodName(), getUrl().getHost(), getUrl().getPort(), ret, System.currentTimeMillis() - begin);
+                if (!cancelled) {
+                    InvokeStatHelper.getInstance().addProxyStat(objName).addInvokeTimeByClient(config.getMasterName(), config.getSlaveName(), config.getSlaveSetName(), config.getSlaveSetArea(), config.getSlaveSetID(), inv.getMethodName(), getUrl().getHost(), getUrl().getPort(), ret, System.currentTimeMillis() - begin);
+                }
             }
         }
     }
 
+    /**
+     * 选择在途请求最少的连接, 从轮询位置开始扫描以便在负载相同时仍然均匀分布.
+     * 跳过后台重连中的连接, 所有连接都已饱和时快速失败
+     * @return
+     */
     private ServantClient getClient() {
-        return clients.length == 1 ? clients[0] : clients[(index.getAndIncrement() & Integer.MAX_VALUE) % clients.length];
+        ServantClient[] clients = this.clients;
+        if (clients.length == 1) {
+            if (clients[0].isSaturated()) {
+                throw new ClientOverloadException(objName, "all connections are saturated|" + clients[0].getAddress());
+            }
+            return clients[0];
+        }
+        int start = (index.getAndIncrement() & Integer.MAX_VALUE) % clients.length;
+        ServantClient selected = null;
+        ServantClient reconnecting = null;
+        int minInFlight = Integer.MAX_VALUE;
+        for (int i = 0; i < clients.length; i++) {
+            ServantClient client = clients[(start + i) % clients.length];
+            if (client.isSaturated()) {
+                continue;
+            }
+            if (client.isReconnecting()) {
+                //建连或重连中的连接只在没有其他可用连接时使用, 调用会快速失败
+                if (reconnecting == null) {
+                    reconnecting = client;
+                }
+                continue;
+            }
+            int inFlight = client.getInFlight();
+            if (inFlight < minInFlight) {
+                selected = client;
+                minInFlight = inFlight;
+                if (inFlight == 0) {
+                    break;
+                }
+            }
+        }
+        if (selected == null) {
+            if (reconnecting != null) {
+                return reconnecting;
+            }
+            throw new ClientOverloadException(objName, "all " + clients.length + " connections are saturated|" + clients[0].getAddress());
+        }
+        return selected;
     }
 
     /**
@@ -122,10 +181,11 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
      * @param method
      * @param args
      * @param context
+     * @param timeout 受上游截止时间限制后的超时时间
      * @return
      * @throws Throwable
      */
-    private TarsServantResponse invokeWithSync(Method method, Object args[], Map<String, String> context) throws Throwable {
+    private TarsServantResponse invokeWithSync(Method method, Object args[], Map<String, String> context, int timeout) throws Throwable {
         ServantClient client = getClient();
         //输入参数
         TarsServantRequest request = new TarsServantRequest(client.getIoSession());
@@ -138,6 +198,7 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
         request.setMethodInfo(AnalystManager.getInstance().getMethodMap(super.getApi()).get(method));
         request.setMethodParameters(args);
         request.setContext(context);
+        request.setTimeout(timeout);
         request.setInvokeStatus(InvokeStatus.SYNC_CALL);
 
         //输出参数
@@ -168,9 +229,14 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
 
         }
 
-        //执行调用链
-        FilterChain filterChain = new TarsClientFilterChain(filters, objName, FilterKind.CLIENT, client, 0, null);
-        filterChain.doFilter(request, response);
+        //执行调用链, 过滤器快照在注册或删除过滤器时重建
+        List<Filter> filters = AppContextManager.getInstance().getFilters(FilterKind.CLIENT);
+        if (filters.isEmpty()) {
+            TarsClientFilterChain.invokeWithSync(client, request, response);
+        } else {
+            FilterChain filterChain = new TarsClientFilterChain(filters, objName, FilterKind.CLIENT, client, 0, null);
+            filterChain.doFilter(request, response);
+        }
         return response;
     }
 
@@ -179,10 +245,11 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
      * @param method
      * @param args
      * @param context
+     * @param timeout 受上游截止时间限制后的超时时间
      * @throws Throwable
      */
     @SuppressWarnings("unchecked")
-    private void invokeWithAsync(Method method, Object args[], Map<String, String> context) throws Throwable {
+    private void invokeWithAsync(Method method, Object args[], Map<String, String> context, int timeout) throws Throwable {
         ServantClient client = getClient();
         TarsServantRequest request = new TarsServantRequest(client.getIoSession());
         request.setVersion(TarsHelper.VERSION);
@@ -196,6 +263,7 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
         request.setApi(super.getApi());
         request.setMethodInfo(methodInfo);
         request.setMethodParameters(args);
+        request.setTimeout(timeout);
         request.setInvokeStatus(InvokeStatus.ASYNC_CALL);
 
         Callback<TarsServantResponse> callback = null;
@@ -225,9 +293,14 @@ public class TarsInvoker<T> extends ServantInvoker<T> {
             request.setStatus(status);
 
         }
-        FilterChain filterChain = new TarsClientFilterChain(filters, objName, FilterKind.CLIENT, client, 1,
-                new TarsCallbackWrapper(config, request.getFunctionName(), getUrl().getHost(), getUrl().getPort(), request.getBornTime(), request, callback, this));
-        filterChain.doFilter(request, response);
+        TarsCallbackWrapper callbackWrapper = new TarsCallbackWrapper(config, request.getFunctionName(), getUrl().getHost(), getUrl().getPort(), request.getBornTime(), request, callback, this);
+        List<Filter> filters = AppContextManager.getInstance().getFilters(FilterKind.CLIENT);
+        if (filters.isEmpty()) {
+            client.invokeWithAsync(request, callbackWrapper);
+        } else {
+            FilterChain filterChain = new TarsClientFilterChain(filters, objName, FilterKind.CLIENT, client, 1, callbackWrapper);
+            filterChain.doFilter(request, response);
+        }
     }
 
     private boolean isHashInvoke(Map<String, String> context) {
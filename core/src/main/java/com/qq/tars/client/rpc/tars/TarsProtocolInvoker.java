@@ -20,6 +20,7 @@ import java.lang.reflect.Method;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import com.qq.tars.client.ServantProxyConfig;
+import com.qq.tars.client.rpc.ServantClient;
 import com.qq.tars.client.rpc.ServantProtocolInvoker;
 import com.qq.tars.net.protocol.ProtocolFactory;
 import com.qq.tars.rpc.common.InvokeContext;
@@ -40,6 +41,11 @@ public class TarsProtocolInvoker<T> extends ServantProtocolInvoker<T> {
         return new TarsInvoker<T>(servantProxyConfig, api, url, getClients(url));
     }
 
+    @Override
+    protected Invoker<T> create(Class<T> api, Url url, ServantClient[] clients) throws Exception {
+        return new TarsInvoker<T>(servantProxyConfig, api, url, clients);
+    }
+
     @Override
     public InvokeContext createContext(Object proxy, Method method, Object[] args) throws Exception {
         return new TarsInvokeContext(method, args, null);
@@ -17,34 +17,63 @@
 package com.qq.tars.client.support;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
 
 import com.qq.tars.client.util.ClientLogger;
 import com.qq.tars.common.util.Constants;
 import com.qq.tars.common.util.Loader;
 import com.qq.tars.common.util.StringUtils;
 
+/**
+ * 本地缓存的服务节点列表.
+ * 文件格式: 文件头magic, 之后是追加写入的记录, 每条记录为[长度][crc32][key][value],
+ * 同一个key以最后一条记录为准. 每次更新只追加一条记录, 无效记录过多时写入临时文件后原子替换.
+ * 多个进程可共用同一文件, 读写和压缩都持有锁文件上的文件锁.
+ * 进程崩溃导致的不完整或损坏记录在加载时通过长度和crc识别, 连同之后的数据一起丢弃
+ */
 public final class ServantCacheManager {
 
     private final static ServantCacheManager instance = new ServantCacheManager();
 
-    private final Properties props = new Properties();
-    private final AtomicBoolean propsInited = new AtomicBoolean();
+    private static final int MAGIC = 0x544E4331;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    //文件超过有效数据的COMPACT_RATIO倍且不小于COMPACT_MIN_SIZE时压缩
+    private static final int COMPACT_RATIO = 2;
+    private static final int COMPACT_MIN_SIZE = 64 * 1024;
+    //获取文件锁的重试次数和间隔(ms)
+    private static final int LOCK_RETRIES = 200;
+    private static final int LOCK_RETRY_INTERVAL = 10;
+
+    private final ConcurrentHashMap<String, String> nodes = new ConcurrentHashMap<String, String>();
+    private volatile boolean inited = false;
     private final ReentrantLock lock = new ReentrantLock();
 
+    //以下字段由lock保护
+    private File cacheFile;
+    //有效记录的大小, 用于判断是否需要压缩
+    private long liveSize;
+
     private ServantCacheManager() {
     }
 
@@ -54,7 +83,7 @@ public final class ServantCacheManager {
 
     public String get(String CommunicatorId, String objName, String dataPath) {
         loadCacheData(dataPath);
-        return props.getProperty(makeKey(CommunicatorId, objName));
+        return nodes.get(makeKey(CommunicatorId, objName));
     }
 
     private String makeKey(String CommunicatorId, String objName) {
@@ -62,17 +91,30 @@ public final class ServantCacheManager {
     }
 
     public void save(String CommunicatorId, String objName, String endpointList, String dataPath) {
+        if (endpointList == null) {
+            return;
+        }
         try {
             loadCacheData(dataPath);
-            props.remove(objName);
-            props.put(makeKey(CommunicatorId, objName), endpointList);
-            saveToLocal(dataPath);
+            String key = makeKey(CommunicatorId, objName);
+            lock.lock();
+            try {
+                String old = nodes.put(key, endpointList);
+                //节点未变化时不写文件
+                if (endpointList.equals(old)) {
+                    return;
+                }
+                liveSize += recordSize(key, endpointList) - (old == null ? 0 : recordSize(key, old));
+                appendToLocal(key, endpointList);
+            } finally {
+                lock.unlock();
+            }
         } catch (Throwable e) {
             ClientLogger.getLogger().error("", e);
         }
     }
 
-    private File getCacheFile(String dataPath) throws Exception {
+    private File getCacheDir(String dataPath) {
         String path = dataPath;
         if (StringUtils.isEmpty(path)) {
             URL url = Loader.getResource("", true);
@@ -86,70 +128,292 @@ public final class ServantCacheManager {
         if (StringUtils.isEmpty(path)) {
             return null;
         }
-        File f = new File(path, Constants.SERVER_NODE_CACHE_FILENAME);
-        if (!f.exists()) {
-            f.createNewFile();
+        return new File(path);
+    }
+
+    private void appendToLocal(String key, String value) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            FileChannel lockChannel = openLockChannel();
+            try {
+                FileLock fileLock = acquireFileLock(lockChannel);
+                try {
+                    //追加模式写入, 多个进程共用同一文件时不会覆盖其他进程的记录
+                    long size;
+                    FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    try {
+                        if (channel.size() == 0) {
+                            writeFully(channel, ByteBuffer.allocate(4).putInt(0, MAGIC));
+                        }
+                        writeFully(channel, encodeRecord(key, value));
+                        size = channel.size();
+                    } finally {
+                        channel.close();
+                    }
+                    if (size > COMPACT_MIN_SIZE && size > liveSize * COMPACT_RATIO) {
+                        compact(null);
+                    }
+                } finally {
+                    fileLock.release();
+                }
+            } finally {
+                lockChannel.close();
+            }
+        } catch (Exception e) {
+            ClientLogger.getLogger().error("save " + cacheFile.getAbsolutePath() + " failed", e);
+        }
+    }
+
+    /**
+     * 重新读取文件中的有效记录(包含其他进程写入的记录), 每个key只保留最新记录, 写入临时文件后原子替换.
+     * 需持有文件锁
+     * @param extra 额外写入的记录, 可为null
+     */
+    private void compact(Map<String, String> extra) throws IOException {
+        Map<String, String> records = new LinkedHashMap<String, String>();
+        if (cacheFile.exists()) {
+            FileChannel reader = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+            try {
+                readRecords(reader, records);
+            } finally {
+                reader.close();
+            }
+        }
+        if (extra != null) {
+            records.putAll(extra);
         }
-        return f;
+
+        File tmp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        long size = 4;
+        FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(channel, ByteBuffer.allocate(4).putInt(0, MAGIC));
+            for (Entry<String, String> entry : records.entrySet()) {
+                ByteBuffer record = encodeRecord(entry.getKey(), entry.getValue());
+                size += record.remaining();
+                writeFully(channel, record);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        try {
+            Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        liveSize = size - 4;
+        ClientLogger.getLogger().info("compact " + cacheFile.getAbsolutePath() + ", size=" + size);
     }
 
-    private void saveToLocal(String dataPath) {
+    private void loadCacheData(String dataPath) {
+        if (inited) {
+            return;
+        }
         lock.lock();
-        OutputStream out = null;
         try {
-            File file = getCacheFile(dataPath);
-            if (file == null) {
+            if (inited) {
                 return;
             }
-            out = new BufferedOutputStream(new FileOutputStream(file));
-            props.store(out, (new Date()).toString());
-            ClientLogger.getLogger().info("save " + file.getAbsolutePath());
-        } catch (Exception e) {
-            ClientLogger.getLogger().error("save " + Constants.SERVER_NODE_CACHE_FILENAME + " failed", e);
-        } finally {
-            if (null != out) {
+            File dir = getCacheDir(dataPath);
+            if (dir != null) {
+                cacheFile = new File(dir, Constants.SERVER_NODE_BINARY_CACHE_FILENAME);
+                FileChannel lockChannel = openLockChannel();
                 try {
-                    out.close();
-                } catch (IOException e) {
+                    FileLock fileLock = acquireFileLock(lockChannel);
+                    try {
+                        if (cacheFile.exists()) {
+                            loadFromLocal();
+                        } else {
+                            loadLegacyData(new File(dir, Constants.SERVER_NODE_CACHE_FILENAME));
+                        }
+                    } finally {
+                        fileLock.release();
+                    }
+                } finally {
+                    lockChannel.close();
                 }
             }
+        } catch (Throwable e) {
+            ClientLogger.getLogger().error("read file " + Constants.SERVER_NODE_BINARY_CACHE_FILENAME + " error.", e);
+        } finally {
+            inited = true;
             lock.unlock();
         }
     }
 
-    private void loadCacheData(String dataPath) {
-        if (propsInited.get()) {
+    /**
+     * 加载文件中的有效记录, 截断无效的尾部. 需持有文件锁
+     */
+    private void loadFromLocal() throws IOException {
+        Map<String, String> records = new LinkedHashMap<String, String>();
+        long valid, size;
+        FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            size = channel.size();
+            valid = readRecords(channel, records);
+            if (valid < size) {
+                //丢弃不完整或损坏的尾部记录, 新记录从有效数据之后追加
+                ClientLogger.getLogger().info("truncate " + cacheFile.getAbsolutePath() + " from " + size + " to " + valid);
+                channel.truncate(valid);
+            }
+        } finally {
+            channel.close();
+        }
+        nodes.putAll(records);
+        liveSize = 0;
+        for (Entry<String, String> entry : records.entrySet()) {
+            liveSize += recordSize(entry.getKey(), entry.getValue());
+        }
+        ClientLogger.getLogger().info("load " + cacheFile.getAbsolutePath() + ", nodes=" + nodes.size());
+    }
+
+    /**
+     * 读取有效记录, 同一个key以最后一条为准
+     * @return 有效数据的长度, 文件头无效时为0
+     */
+    private static long readRecords(FileChannel channel, Map<String, String> records) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+        long position = 0;
+        while (data.hasRemaining()) {
+            int n = channel.read(data, position);
+            if (n < 0) {
+                break;
+            }
+            position += n;
+        }
+        data.flip();
+
+        if (data.remaining() < 4 || data.getInt() != MAGIC) {
+            return 0;
+        }
+        long valid = 4;
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= 8) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 8 || length > data.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer record = data.slice();
+            record.limit(length);
+            String[] entry = decodeRecord(record);
+            if (entry == null) {
+                break;
+            }
+            records.remove(entry[0]);
+            records.put(entry[0], entry[1]);
+            data.position(data.position() + length);
+            valid = data.position();
+        }
+        return valid;
+    }
+
+    /**
+     * 解析一条记录, 长度字段与记录长度不符时视为损坏, 返回null
+     */
+    private static String[] decodeRecord(ByteBuffer record) {
+        int keyLength = record.getInt();
+        if (keyLength < 0 || keyLength > record.remaining() - 4) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        record.get(key);
+        int valueLength = record.getInt();
+        if (valueLength != record.remaining()) {
+            return null;
+        }
+        byte[] value = new byte[valueLength];
+        record.get(value);
+        return new String[]{new String(key, UTF8), new String(value, UTF8)};
+    }
+
+    /**
+     * 从旧版本的properties文件导入, 并写成新格式. 需持有文件锁
+     */
+    private void loadLegacyData(File file) throws IOException {
+        if (!file.exists()) {
             return;
         }
-        if (propsInited.compareAndSet(false, true)) {
-            InputStream in = null;
+        Properties props = new Properties();
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        Map<String, String> legacy = new LinkedHashMap<String, String>();
+        for (Map.Entry<Object, Object> entry : props.entrySet()) {
+            String key = entry.getKey().toString();
+            if (!key.startsWith("<")) {
+                legacy.put(key, entry.getValue().toString());
+            }
+        }
+        nodes.putAll(legacy);
+        if (!legacy.isEmpty()) {
+            compact(legacy);
+        }
+        ClientLogger.getLogger().info("load " + file.getAbsolutePath() + ", nodes=" + nodes.size());
+    }
+
+    /**
+     * 多进程共用缓存文件时用单独的锁文件互斥, 压缩替换数据文件后锁仍然有效
+     */
+    private FileChannel openLockChannel() throws IOException {
+        File lockFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".lock");
+        return FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    }
+
+    private static FileLock acquireFileLock(FileChannel channel) throws IOException {
+        for (int i = 0; i < LOCK_RETRIES; i++) {
             try {
-                File file = getCacheFile(dataPath);
-                if (file == null) {
-                    return;
-                }
-                in = new BufferedInputStream(new FileInputStream(file));
-                props.load(in);
-                ArrayList<String> removeKey = new ArrayList<String>();
-                for (Entry<Object, Object> entry : props.entrySet()) {
-                    if (entry.getKey().toString().startsWith("<")) {
-                        removeKey.add(entry.getKey().toString());
-                    }
-                }
-                for (String key : removeKey) {
-                    props.remove(key);
-                }
-                ClientLogger.getLogger().info("load " + Constants.SERVER_NODE_CACHE_FILENAME);
-            } catch (Throwable e) {
-                ClientLogger.getLogger().error("read file " + Constants.SERVER_NODE_CACHE_FILENAME + " error.", e);
-            } finally {
-                if (null != in) {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                    }
+                FileLock fileLock = channel.tryLock();
+                if (fileLock != null) {
+                    return fileLock;
                 }
+            } catch (OverlappingFileLockException e) {
+                //同一进程的其他类加载器持有锁
             }
+            try {
+                Thread.sleep(LOCK_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while locking " + Constants.SERVER_NODE_BINARY_CACHE_FILENAME);
+            }
+        }
+        throw new IOException("timed out while locking " + Constants.SERVER_NODE_BINARY_CACHE_FILENAME);
+    }
+
+    private static ByteBuffer encodeRecord(String key, String value) {
+        byte[] k = key.getBytes(UTF8);
+        byte[] v = value.getBytes(UTF8);
+        int length = 4 + k.length + 4 + v.length;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.putInt(k.length).put(k);
+        buffer.putInt(v.length).put(v);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int recordSize(String key, String value) {
+        return 16 + key.getBytes(UTF8).length + value.getBytes(UTF8).length;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
         }
     }
 }
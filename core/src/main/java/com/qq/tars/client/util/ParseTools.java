@@ -144,6 +144,9 @@ public class ParseTools {
 
         Map<String, String> parameters = new HashMap<String, String>();
         parameters.put(Constants.TARS_CLIENT_CONNECTIONS, String.valueOf(conf.getConnections()));
+        parameters.put(Constants.TARS_CLIENT_MAXINFLIGHT, String.valueOf(conf.getMaxInFlight()));
+        parameters.put(Constants.TARS_CLIENT_MAXBATCHSIZE, String.valueOf(conf.getMaxBatchSize()));
+        parameters.put(Constants.TARS_CLIENT_MAXCONNECTIONS, String.valueOf(conf.getMaxConnections()));
         parameters.put(Constants.TARS_CLIENT_ACTIVE, Boolean.toString(active == 1));
         parameters.put(Constants.TARS_CLIENT_SETDIVISION, setDivision);
         parameters.put(Constants.TARS_CLIENT_CONNECTTIMEOUT, String.valueOf(conf.getConnectTimeout()));
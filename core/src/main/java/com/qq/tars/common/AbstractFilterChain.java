@@ -1,6 +1,6 @@
 package com.qq.tars.common;
 
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 
 import com.qq.tars.net.core.Request;
@@ -8,7 +8,7 @@ import com.qq.tars.net.core.Response;
 
 public abstract class AbstractFilterChain<T> implements FilterChain {
 
-	private List<Filter> filters;
+	private final List<Filter> filters;
 	
 	protected String servant;
 	
@@ -16,10 +16,14 @@ public abstract class AbstractFilterChain<T> implements FilterChain {
 	
 	protected T target;
 	
-	private Iterator<Filter> iteator;
+	//当前执行到的过滤器下标
+	private int index;
 	
+	/**
+	 * @param filters 过滤器快照，由AppContext在注册或删除过滤器时重建，调用过程中不会被修改
+	 */
 	public AbstractFilterChain(List<Filter> filters, String servant, FilterKind kind, T target) {
-		this.filters = filters;
+		this.filters = filters == null ? Collections.<Filter>emptyList() : filters;
 		this.servant = servant;
 		this.kind = kind;
 		this.target = target;
@@ -33,28 +37,14 @@ public abstract class AbstractFilterChain<T> implements FilterChain {
 	 */
 	@Override
 	public void doFilter(Request request, Response response) throws Throwable {
-		Filter filter = getFilter();
-		if (filter != null) {
-			filter.doFilter(request, response, this);
+		if (index < filters.size()) {
+			filters.get(index++).doFilter(request, response, this);
 		} else {
 			doRealInvoke(request, response);
 		}
 
 	}
 	
-	private Filter getFilter() {
-		if (filters == null || filters.isEmpty()) {
-			return null;
-		}
-		if (iteator == null) {
-			iteator = filters.iterator();
-		}
-		if (iteator.hasNext()) {
-			return iteator.next();
-		}
-		return null;
-	}
-	
 	protected abstract void doRealInvoke(Request request, Response response) throws Throwable;
 
 }
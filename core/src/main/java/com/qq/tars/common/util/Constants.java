@@ -19,6 +19,7 @@ package com.qq.tars.common.util;
 public interface Constants {
 
     String SERVER_NODE_CACHE_FILENAME = "tarsnodes.dat";
+    String SERVER_NODE_BINARY_CACHE_FILENAME = "tarsnodes.bin";
 
     int INVOKE_STATUS_SUCC = 0;
     int INVOKE_STATUS_EXEC = 1;
@@ -32,6 +33,10 @@ public interface Constants {
     String default_stat = "tars.tarsstat.StatObj";
 
     int default_connections = 4;
+    int default_max_inflight = 0;
+    int default_max_batch_size = 0;
+    int default_max_connections = 0;
+    int default_connection_adjust_interval = 5 * 1000;
     int default_connect_timeout = 3000;
     int default_sync_timeout = 3000;
     int default_async_timeout = 3000;
@@ -62,6 +67,9 @@ public interface Constants {
     String TARS_JCE_VERSION = "version";
 
     String TARS_CLIENT_CONNECTIONS = "connections";
+    String TARS_CLIENT_MAXINFLIGHT = "maxInFlight";
+    String TARS_CLIENT_MAXBATCHSIZE = "maxBatchSize";
+    String TARS_CLIENT_MAXCONNECTIONS = "maxConnections";
     String TARS_CLIENT_CONNECTTIMEOUT = "connectTimeout";
     String TARS_CLIENT_SYNCTIMEOUT = "syncTimeout";
     String TARS_CLIENT_ASYNCTIMEOUT = "asyncTimeout";
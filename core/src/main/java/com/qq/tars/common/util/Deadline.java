@@ -0,0 +1,61 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.common.util;
+
+import com.qq.tars.context.DistributedContext;
+import com.qq.tars.context.DistributedContextManager;
+
+/**
+ * 调用截止时间, 服务端收到请求时根据iTimeout写入分布式上下文, 本次处理中发出的下游调用以剩余时间作为超时上限
+ */
+public final class Deadline {
+
+    public static final String DEADLINE = "tars.deadline";
+
+    private Deadline() {
+    }
+
+    /**
+     * @param deadline 截止时间(毫秒时间戳)
+     */
+    public static void set(long deadline) {
+        DistributedContextManager.getDistributedContext().put(DEADLINE, deadline);
+    }
+
+    /**
+     * @return 截止时间(毫秒时间戳), 0表示没有截止时间
+     */
+    public static long get() {
+        DistributedContext context = DistributedContextManager.getDistributedContext();
+        Long deadline = context.get(DEADLINE);
+        return deadline == null ? 0 : deadline;
+    }
+
+    /**
+     * 以剩余时间限制调用超时
+     * @param timeout 配置的超时时间(毫秒)
+     * @return 实际使用的超时时间, 小于等于0表示已经超过截止时间
+     */
+    public static int cap(int timeout) {
+        long deadline = get();
+        if (deadline <= 0) {
+            return timeout;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        return remaining < timeout ? (int) Math.max(remaining, 0) : timeout;
+    }
+}
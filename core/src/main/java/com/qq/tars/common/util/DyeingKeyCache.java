@@ -25,6 +25,8 @@ public class DyeingKeyCache {
 	
 	private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
 	
+	private volatile boolean empty = true;
+	
 	private DyeingKeyCache() {
 	}
 	
@@ -32,6 +34,13 @@ public class DyeingKeyCache {
 		return instance;
 	}
 	
+	/**
+	 * 是否从未设置过染色key, 未染色请求据此跳过加锁查找
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+	
 	public String get(String servantName, String interfaceName) {
 		try {
 			readWriteLock.readLock().lock();
@@ -45,6 +54,7 @@ public class DyeingKeyCache {
 		try {
 			readWriteLock.writeLock().lock();
 			cache_table.set(servantName, interfaceName, routeKey);
+			empty = false;
 		} finally {
 			readWriteLock.writeLock().unlock();
 		}
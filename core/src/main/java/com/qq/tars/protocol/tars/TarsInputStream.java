@@ -16,11 +16,11 @@
 
 package com.qq.tars.protocol.tars;
 
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -101,8 +101,17 @@ public final class TarsInputStream {
         readHead(hd, bs);
     }
 
-    private int peakHead(HeadData hd) {
-        return readHead(hd, bs.duplicate());
+    /**
+     * 读取头信息, 只返回类型而不分配HeadData
+     * @return
+     */
+    byte readType() {
+        byte b = bs.get();
+        if ((b & (15 << 4)) == (15 << 4)) {
+            //跳过tag2字节
+            bs.get();
+        }
+        return (byte) (b & 15);
     }
 
     /**
@@ -115,15 +124,29 @@ public final class TarsInputStream {
 
     public boolean skipToTag(int tag) {
         try {
-            HeadData hd = new HeadData();
             while (true) {
-                int len = peakHead(hd);
-                if (hd.type == TarsStructBase.STRUCT_END) {
+                //直接按绝对位置窥探头信息, 不复制缓冲区也不分配HeadData
+                int pos = bs.position();
+                if (pos >= bs.limit()) {
+                    return false;
+                }
+                byte b = bs.get(pos);
+                byte type = (byte) (b & 15);
+                if (type == TarsStructBase.STRUCT_END) {
                     return false;
                 }
-                if (tag <= hd.tag) return tag == hd.tag;
+                int headTag = (b & (15 << 4)) >> 4;
+                int len = 1;
+                if (headTag == 15) {
+                    if (pos + 1 >= bs.limit()) {
+                        return false;
+                    }
+                    headTag = (bs.get(pos + 1) & 0x00ff);
+                    len = 2;
+                }
+                if (tag <= headTag) return tag == headTag;
                 skip(len);
-                skipField(hd.type);
+                skipField(type);
             }
         } catch (TarsDecodeException e) {
         } catch (BufferUnderflowException e) {
@@ -132,17 +155,15 @@ public final class TarsInputStream {
     }
 
     public void skipToStructEnd() {
-        HeadData hd = new HeadData();
+        byte type;
         do {
-            readHead(hd);
-            skipField(hd.type);
-        } while (hd.type != TarsStructBase.STRUCT_END);
+            type = readType();
+            skipField(type);
+        } while (type != TarsStructBase.STRUCT_END);
     }
 
     private void skipField() {
-        HeadData hd = new HeadData();
-        readHead(hd);
-        skipField(hd.type);
+        skipField(readType());
     }
 
     private void skipField(byte type) {
@@ -188,10 +209,9 @@ public final class TarsInputStream {
                 break;
             }
             case TarsStructBase.SIMPLE_LIST: {
-                HeadData hd = new HeadData();
-                readHead(hd);
-                if (hd.type != TarsStructBase.BYTE) {
-                    throw new TarsDecodeException("skipField with invalid type, type value: " + type + ", " + hd.type);
+                byte elementType = readType();
+                if (elementType != TarsStructBase.BYTE) {
+                    throw new TarsDecodeException("skipField with invalid type, type value: " + type + ", " + elementType);
                 }
                 int size = read(0, 0, true);
                 skip(size);
@@ -215,9 +235,8 @@ public final class TarsInputStream {
 
     public byte read(byte c, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.ZERO_TAG:
                     c = 0x0;
                     break;
@@ -235,9 +254,8 @@ public final class TarsInputStream {
 
     public short read(short n, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.ZERO_TAG:
                     n = 0;
                     break;
@@ -258,9 +276,8 @@ public final class TarsInputStream {
 
     public int read(int n, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.ZERO_TAG:
                     n = 0;
                     break;
@@ -284,9 +301,8 @@ public final class TarsInputStream {
 
     public long read(long n, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.ZERO_TAG:
                     n = 0;
                     break;
@@ -313,9 +329,8 @@ public final class TarsInputStream {
 
     public float read(float n, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.ZERO_TAG:
                     n = 0;
                     break;
@@ -333,9 +348,8 @@ public final class TarsInputStream {
 
     public double read(double n, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.ZERO_TAG:
                     n = 0;
                     break;
@@ -356,9 +370,8 @@ public final class TarsInputStream {
 
     public String readByteString(String s, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.STRING1: {
                     int len = bs.get();
                     if (len < 0) len += 256;
@@ -386,31 +399,18 @@ public final class TarsInputStream {
 
     public String read(String s, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.STRING1: {
                     int len = bs.get();
                     if (len < 0) len += 256;
-                    byte[] ss = new byte[len];
-                    bs.get(ss);
-                    try {
-                        s = new String(ss, sServerEncoding);
-                    } catch (UnsupportedEncodingException e) {
-                        s = new String(ss);
-                    }
+                    s = TarsStringCodec.decode(bs, len, getCharset());
                 }
                     break;
                 case TarsStructBase.STRING4: {
                     int len = bs.getInt();
                     if (len > TarsStructBase.MAX_STRING_LENGTH || len < 0) throw new TarsDecodeException("String too long: " + len);
-                    byte[] ss = new byte[len];
-                    bs.get(ss);
-                    try {
-                        s = new String(ss, sServerEncoding);
-                    } catch (UnsupportedEncodingException e) {
-                        s = new String(ss);
-                    }
+                    s = TarsStringCodec.decode(bs, len, getCharset());
                 }
                     break;
                 default:
@@ -423,33 +423,34 @@ public final class TarsInputStream {
     }
 
     public String readString(int tag, boolean isRequire) {
+        return readString(tag, isRequire, false);
+    }
+
+    /**
+     * 读取servant名, 函数名, context和status的键等重复出现的短字符串, 通过短字符串缓存避免重复解码
+     * @param tag
+     * @param isRequire
+     * @return
+     */
+    public String readNameString(int tag, boolean isRequire) {
+        return readString(tag, isRequire, true);
+    }
+
+    private String readString(int tag, boolean isRequire, boolean cached) {
         String s = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.STRING1: {
                     int len = bs.get();
                     if (len < 0) len += 256;
-                    byte[] ss = new byte[len];
-                    bs.get(ss);
-                    try {
-                        s = new String(ss, sServerEncoding);
-                    } catch (UnsupportedEncodingException e) {
-                        s = new String(ss);
-                    }
+                    s = cached ? TarsStringCodec.decodeName(bs, len, getCharset()) : TarsStringCodec.decode(bs, len, getCharset());
                 }
                     break;
                 case TarsStructBase.STRING4: {
                     int len = bs.getInt();
                     if (len > TarsStructBase.MAX_STRING_LENGTH || len < 0) throw new TarsDecodeException("String too long: " + len);
-                    byte[] ss = new byte[len];
-                    bs.get(ss);
-                    try {
-                        s = new String(ss, sServerEncoding);
-                    } catch (UnsupportedEncodingException e) {
-                        s = new String(ss);
-                    }
+                    s = cached ? TarsStringCodec.decodeName(bs, len, getCharset()) : TarsStringCodec.decode(bs, len, getCharset());
                 }
                     break;
                 default:
@@ -461,21 +462,65 @@ public final class TarsInputStream {
         return s;
     }
 
+    /**
+     * 读取字符串字段并在名字表中查找, 命中时返回表中的值, 不创建字符串;
+     * 未命中时返回null且不移动读取位置, 调用方可以再用readString读取
+     * @param table
+     * @param tag
+     * @param isRequire
+     * @return
+     */
+    public <V> V readName(TarsNameTable<V> table, int tag, boolean isRequire) {
+        if (!skipToTag(tag)) {
+            if (isRequire) {
+                throw new TarsDecodeException("require field not exist.");
+            }
+            return null;
+        }
+        int start = bs.position();
+        byte type = readType();
+        int len;
+        switch (type) {
+            case TarsStructBase.STRING1:
+                len = bs.get() & 0xff;
+                break;
+            case TarsStructBase.STRING4:
+                len = bs.getInt();
+                break;
+            default:
+                throw new TarsDecodeException("type mismatch.");
+        }
+        if (bs.hasArray() && len >= 0 && len <= bs.remaining()) {
+            V value = table.get(bs.array(), bs.arrayOffset() + bs.position(), len);
+            if (value != null) {
+                bs.position(bs.position() + len);
+                return value;
+            }
+        }
+        bs.position(start);
+        return null;
+    }
+
     public String[] read(String[] s, int tag, boolean isRequire) {
         return readArray(s, tag, isRequire);
     }
 
+    /**
+     * 读取context, status等字符串到字符串的Map字段, 键通过短字符串缓存解码
+     * @param tag
+     * @param isRequire
+     * @return
+     */
     public Map<String, String> readStringMap(int tag, boolean isRequire) {
         HashMap<String, String> mr = new HashMap<String, String>();
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.MAP: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     for (int i = 0; i < size; ++i) {
-                        String k = readString(0, true);
+                        String k = readNameString(0, true);
                         String v = readString(1, true);
                         mr.put(k, v);
                     }
@@ -506,9 +551,8 @@ public final class TarsInputStream {
         V mv = en.getValue();
 
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.MAP: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
@@ -532,16 +576,14 @@ public final class TarsInputStream {
     public List readList(int tag, boolean isRequire) {
         List lr = new ArrayList();
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     for (int i = 0; i < size; ++i) {
-                        HeadData subH = new HeadData();
-                        readHead(subH);
-                        switch (subH.type) {
+                        byte subType = readType();
+                        switch (subType) {
                             case TarsStructBase.BYTE:
                                 skip(1);
                                 break;
@@ -611,15 +653,14 @@ public final class TarsInputStream {
     public boolean[] read(boolean[] l, int tag, boolean isRequire) {
         boolean[] lr = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     lr = new boolean[size];
                     for (int i = 0; i < size; ++i)
-                        lr[i] = read(lr[0], 0, true);
+                        lr[i] = readBooleanElement();
                     break;
                 }
                 default:
@@ -634,17 +675,15 @@ public final class TarsInputStream {
     public byte[] read(byte[] l, int tag, boolean isRequire) {
         byte[] lr = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.SIMPLE_LIST: {
-                    HeadData hh = new HeadData();
-                    readHead(hh);
-                    if (hh.type != TarsStructBase.BYTE) {
-                        throw new TarsDecodeException("type mismatch, tag: " + tag + ", type: " + hd.type + ", " + hh.type);
+                    byte subType = readType();
+                    if (subType != TarsStructBase.BYTE) {
+                        throw new TarsDecodeException("type mismatch, tag: " + tag + ", type: " + type + ", " + subType);
                     }
                     int size = read(0, 0, true);
-                    if (size < 0) throw new TarsDecodeException("invalid size, tag: " + tag + ", type: " + hd.type + ", " + hh.type + ", size: " + size);
+                    if (size < 0) throw new TarsDecodeException("invalid size, tag: " + tag + ", type: " + type + ", " + subType + ", size: " + size);
                     lr = new byte[size];
                     bs.get(lr);
                     break;
@@ -654,7 +693,48 @@ public final class TarsInputStream {
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     lr = new byte[size];
                     for (int i = 0; i < size; ++i)
-                        lr[i] = read(lr[0], 0, true);
+                        lr[i] = readByteElement();
+                    break;
+                }
+                default:
+                    throw new TarsDecodeException("type mismatch.");
+            }
+        } else if (isRequire) {
+            throw new TarsDecodeException("require field not exist.");
+        }
+        return lr;
+    }
+
+    /**
+     * 读取byte[]字段, 返回与当前缓冲区共享内容的视图而不复制数据
+     * @param tag
+     * @param isRequire
+     * @return
+     */
+    public ByteBuffer readByteBuffer(int tag, boolean isRequire) {
+        ByteBuffer lr = null;
+        if (skipToTag(tag)) {
+            byte type = readType();
+            switch (type) {
+                case TarsStructBase.SIMPLE_LIST: {
+                    byte subType = readType();
+                    if (subType != TarsStructBase.BYTE) {
+                        throw new TarsDecodeException("type mismatch, tag: " + tag + ", type: " + type + ", " + subType);
+                    }
+                    int size = read(0, 0, true);
+                    if (size < 0 || size > bs.remaining()) throw new TarsDecodeException("invalid size, tag: " + tag + ", type: " + type + ", " + subType + ", size: " + size);
+                    lr = bs.slice();
+                    lr.limit(size);
+                    skip(size);
+                    break;
+                }
+                case TarsStructBase.LIST: {
+                    int size = read(0, 0, true);
+                    if (size < 0) throw new TarsDecodeException("size invalid: " + size);
+                    byte[] data = new byte[size];
+                    for (int i = 0; i < size; ++i)
+                        data[i] = readByteElement();
+                    lr = ByteBuffer.wrap(data);
                     break;
                 }
                 default:
@@ -669,15 +749,14 @@ public final class TarsInputStream {
     public short[] read(short[] l, int tag, boolean isRequire) {
         short[] lr = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     lr = new short[size];
                     for (int i = 0; i < size; ++i)
-                        lr[i] = read(lr[0], 0, true);
+                        lr[i] = readShortElement();
                     break;
                 }
                 default:
@@ -692,15 +771,14 @@ public final class TarsInputStream {
     public int[] read(int[] l, int tag, boolean isRequire) {
         int[] lr = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     lr = new int[size];
                     for (int i = 0; i < size; ++i)
-                        lr[i] = read(lr[0], 0, true);
+                        lr[i] = readIntElement();
                     break;
                 }
                 default:
@@ -715,15 +793,14 @@ public final class TarsInputStream {
     public long[] read(long[] l, int tag, boolean isRequire) {
         long[] lr = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     lr = new long[size];
                     for (int i = 0; i < size; ++i)
-                        lr[i] = read(lr[0], 0, true);
+                        lr[i] = readLongElement();
                     break;
                 }
                 default:
@@ -738,15 +815,14 @@ public final class TarsInputStream {
     public float[] read(float[] l, int tag, boolean isRequire) {
         float[] lr = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     lr = new float[size];
                     for (int i = 0; i < size; ++i)
-                        lr[i] = read(lr[0], 0, true);
+                        lr[i] = readFloatElement();
                     break;
                 }
                 default:
@@ -761,15 +837,14 @@ public final class TarsInputStream {
     public double[] read(double[] l, int tag, boolean isRequire) {
         double[] lr = null;
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     lr = new double[size];
                     for (int i = 0; i < size; ++i)
-                        lr[i] = read(lr[0], 0, true);
+                        lr[i] = readDoubleElement();
                     break;
                 }
                 default:
@@ -781,6 +856,141 @@ public final class TarsInputStream {
         return lr;
     }
 
+    /**
+     * 读取列表元素的头部. 列表元素的tag固定为0, 无需像字段一样通过skipToTag查找
+     * @return 元素类型
+     */
+    private byte readElementHead() {
+        int tag;
+        byte b;
+        try {
+            b = bs.get();
+            tag = (b & 0xf0) >> 4;
+            if (tag == 15) {
+                tag = bs.get() & 0x00ff;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new TarsDecodeException("require field not exist.");
+        }
+        if (tag != 0 || (b & 15) == TarsStructBase.STRUCT_END) {
+            throw new TarsDecodeException("require field not exist.");
+        }
+        return (byte) (b & 15);
+    }
+
+    private boolean readBooleanElement() {
+        return readByteElement() != 0;
+    }
+
+    private byte readByteElement() {
+        switch (readElementHead()) {
+            case TarsStructBase.ZERO_TAG:
+                return 0x0;
+            case TarsStructBase.BYTE:
+                return bs.get();
+            default:
+                throw new TarsDecodeException("type mismatch.");
+        }
+    }
+
+    private short readShortElement() {
+        switch (readElementHead()) {
+            case TarsStructBase.ZERO_TAG:
+                return 0;
+            case TarsStructBase.BYTE:
+                return bs.get();
+            case TarsStructBase.SHORT:
+                return bs.getShort();
+            default:
+                throw new TarsDecodeException("type mismatch.");
+        }
+    }
+
+    private int readIntElement() {
+        switch (readElementHead()) {
+            case TarsStructBase.ZERO_TAG:
+                return 0;
+            case TarsStructBase.BYTE:
+                return bs.get();
+            case TarsStructBase.SHORT:
+                return bs.getShort();
+            case TarsStructBase.INT:
+                return bs.getInt();
+            default:
+                throw new TarsDecodeException("type mismatch.");
+        }
+    }
+
+    private long readLongElement() {
+        switch (readElementHead()) {
+            case TarsStructBase.ZERO_TAG:
+                return 0;
+            case TarsStructBase.BYTE:
+                return bs.get();
+            case TarsStructBase.SHORT:
+                return bs.getShort();
+            case TarsStructBase.INT:
+                return bs.getInt();
+            case TarsStructBase.LONG:
+                return bs.getLong();
+            default:
+                throw new TarsDecodeException("type mismatch.");
+        }
+    }
+
+    private float readFloatElement() {
+        switch (readElementHead()) {
+            case TarsStructBase.ZERO_TAG:
+                return 0;
+            case TarsStructBase.FLOAT:
+                return bs.getFloat();
+            default:
+                throw new TarsDecodeException("type mismatch.");
+        }
+    }
+
+    private double readDoubleElement() {
+        switch (readElementHead()) {
+            case TarsStructBase.ZERO_TAG:
+                return 0;
+            case TarsStructBase.FLOAT:
+                return bs.getFloat();
+            case TarsStructBase.DOUBLE:
+                return bs.getDouble();
+            default:
+                throw new TarsDecodeException("type mismatch.");
+        }
+    }
+
+    /**
+     * 按原型直接读取装箱的数值元素, 不支持的类型返回null
+     * @param mt
+     * @return
+     */
+    private Object readBoxedElement(Object mt) {
+        if (mt instanceof Integer) {
+            return Integer.valueOf(readIntElement());
+        } else if (mt instanceof Long) {
+            return Long.valueOf(readLongElement());
+        } else if (mt instanceof Double) {
+            return Double.valueOf(readDoubleElement());
+        } else if (mt instanceof Float) {
+            return Float.valueOf(readFloatElement());
+        } else if (mt instanceof Short) {
+            return Short.valueOf(readShortElement());
+        } else if (mt instanceof Byte) {
+            return Byte.valueOf(readByteElement());
+        } else if (mt instanceof Boolean) {
+            return Boolean.valueOf(readBooleanElement());
+        }
+        return null;
+    }
+
+    private static boolean isBoxedPrimitive(Object mt) {
+        return mt instanceof Integer || mt instanceof Long || mt instanceof Double || mt instanceof Float
+                || mt instanceof Short || mt instanceof Byte || mt instanceof Boolean;
+    }
+
     public <T> T[] readArray(T[] l, int tag, boolean isRequire) {
         if (l == null || l.length == 0) throw new TarsDecodeException("unable to get type of key and value.");
         return readArrayImpl(l[0], tag, isRequire);
@@ -790,26 +1000,56 @@ public final class TarsInputStream {
         if (l == null || l.isEmpty()) {
             return new ArrayList<T>();
         }
-        T[] tt = readArrayImpl(l.get(0), tag, isRequire);
+        T mt = l.get(0);
+        if (isBoxedPrimitive(mt)) {
+            return readBoxedList(mt, tag, isRequire);
+        }
+        T[] tt = readArrayImpl(mt, tag, isRequire);
         if (tt == null) return null;
-        ArrayList<T> ll = new ArrayList<T>();
+        ArrayList<T> ll = new ArrayList<T>(tt.length);
         for (int i = 0; i < tt.length; ++i)
             ll.add(tt[i]);
         return ll;
     }
 
+    /**
+     * 数值列表直接读入ArrayList, 不经过中间数组和逐个元素的skipToTag
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> readBoxedList(T mt, int tag, boolean isRequire) {
+        if (skipToTag(tag)) {
+            byte type = readType();
+            switch (type) {
+                case TarsStructBase.LIST: {
+                    int size = read(0, 0, true);
+                    if (size < 0) throw new TarsDecodeException("size invalid: " + size);
+                    ArrayList<T> lr = new ArrayList<T>(Math.min(size, bs.remaining()));
+                    for (int i = 0; i < size; ++i) {
+                        lr.add((T) readBoxedElement(mt));
+                    }
+                    return lr;
+                }
+                default:
+                    throw new TarsDecodeException("type mismatch.");
+            }
+        } else if (isRequire) {
+            throw new TarsDecodeException("require field not exist.");
+        }
+        return null;
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T[] readArrayImpl(T mt, int tag, boolean isRequire) {
         if (skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            readHead(hd);
-            switch (hd.type) {
+            byte type = readType();
+            switch (type) {
                 case TarsStructBase.LIST: {
                     int size = read(0, 0, true);
                     if (size < 0) throw new TarsDecodeException("size invalid: " + size);
                     T[] lr = (T[]) Array.newInstance(mt.getClass(), size);
+                    boolean boxed = isBoxedPrimitive(mt);
                     for (int i = 0; i < size; ++i) {
-                        T t = (T) read(mt, 0, true);
+                        T t = (T) (boxed ? readBoxedElement(mt) : read(mt, 0, true));
                         lr[i] = t;
                     }
                     return lr;
@@ -832,9 +1072,8 @@ public final class TarsInputStream {
                 throw new TarsDecodeException(e.getMessage());
             }
 
-            HeadData hd = new HeadData();
-            readHead(hd);
-            if (hd.type != TarsStructBase.STRUCT_BEGIN) throw new TarsDecodeException("type mismatch.");
+            byte type = readType();
+            if (type != TarsStructBase.STRUCT_BEGIN) throw new TarsDecodeException("type mismatch.");
             ref.readFrom(this);
             skipToStructEnd();
         } else if (isRequire) {
@@ -847,14 +1086,13 @@ public final class TarsInputStream {
         TarsStructBase ref = null;
         if (skipToTag(tag)) {
             try {
-                ref = o.getClass().newInstance();
+                ref = TarsStructFactory.newInstance(o.getClass());
             } catch (Exception e) {
                 throw new TarsDecodeException(e.getMessage());
             }
 
-            HeadData hd = new HeadData();
-            readHead(hd);
-            if (hd.type != TarsStructBase.STRUCT_BEGIN) throw new TarsDecodeException("type mismatch.");
+            byte type = readType();
+            if (type != TarsStructBase.STRUCT_BEGIN) throw new TarsDecodeException("type mismatch.");
             ref.readFrom(this);
             skipToStructEnd();
         } else if (isRequire) {
@@ -917,11 +1155,21 @@ public final class TarsInputStream {
 
     protected String sServerEncoding = "GBK";
 
+    private Charset charset;
+
     public int setServerEncoding(String se) {
         sServerEncoding = se;
+        charset = null;
         return 0;
     }
 
+    private Charset getCharset() {
+        if (charset == null) {
+            charset = TarsStringCodec.charset(sServerEncoding);
+        }
+        return charset;
+    }
+
     public static void main(String[] args) {
 
     }
@@ -20,7 +20,6 @@ import java.util.List;
 
 import com.qq.tars.common.util.BeanAccessor;
 import com.qq.tars.common.util.CommonUtils;
-import com.qq.tars.protocol.tars.TarsInputStream.HeadData;
 import com.qq.tars.protocol.tars.exc.TarsDecodeException;
 import com.qq.tars.protocol.tars.support.TarsStructInfo;
 import com.qq.tars.protocol.tars.support.TarsStrutPropertyInfo;
@@ -37,13 +36,11 @@ public class TarsInputStreamExt {
         }
 
         if (jis.skipToTag(tag)) {
-            HeadData hd = new HeadData();
-            jis.readHead(hd);
-            if (hd.type != TarsStructBase.STRUCT_BEGIN) {
+            if (jis.readType() != TarsStructBase.STRUCT_BEGIN) {
                 throw new TarsDecodeException("type mismatch.");
             }
 
-            T result = (T) CommonUtils.newInstance(e.getClass());
+            T result = (T) TarsStructFactory.newInstance(e.getClass());
 
             List<TarsStrutPropertyInfo> list = info.getPropertyList();
             if (!CommonUtils.isEmptyCollection(list)) {
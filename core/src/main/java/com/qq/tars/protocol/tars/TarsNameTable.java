@@ -0,0 +1,159 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.protocol.tars;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 已知名字(servant名, 函数名等)的查找表, 直接用编码后的字节匹配, 命中时不需要创建字符串.
+ * 只收录ASCII名字, 这样与传输使用的字符集无关. 注册很少发生, 写入时复制整张表, 查找无锁
+ * @param <V>
+ */
+public final class TarsNameTable<V> {
+
+    private static final class Entry<V> {
+
+        final byte[] bytes;
+        final int hash;
+        final V value;
+
+        Entry(byte[] bytes, int hash, V value) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    //开放寻址, 长度为2的幂, 负载不超过1/2
+    private volatile Entry<V>[] table = newTable(16);
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    private static <V> Entry<V>[] newTable(int capacity) {
+        return new Entry[capacity];
+    }
+
+    /**
+     * 注册名字, 已存在时保留原来的值
+     * @param name
+     * @param value
+     * @return 是否收录(非ASCII名字不收录)
+     */
+    public synchronized boolean putIfAbsent(String name, V value) {
+        if (!isAscii(name)) {
+            return false;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        int hash = hash(bytes, 0, bytes.length);
+        if (find(table, bytes, 0, bytes.length, hash) != null) {
+            return true;
+        }
+
+        Entry<V>[] old = table;
+        int capacity = old.length;
+        while ((size + 1) * 2 > capacity) {
+            capacity <<= 1;
+        }
+        Entry<V>[] newTable = newTable(capacity);
+        for (Entry<V> e : old) {
+            if (e != null) {
+                insert(newTable, e);
+            }
+        }
+        insert(newTable, new Entry<V>(bytes, hash, value));
+        size++;
+        table = newTable;
+        return true;
+    }
+
+    public V get(String name) {
+        if (name == null || !isAscii(name)) {
+            return null;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        return get(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 按字节查找
+     * @param array
+     * @param offset
+     * @param len
+     * @return 未命中返回null
+     */
+    public V get(byte[] array, int offset, int len) {
+        Entry<V> e = find(table, array, offset, len, hash(array, offset, len));
+        return e == null ? null : e.value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static <V> Entry<V> find(Entry<V>[] table, byte[] array, int offset, int len, int hash) {
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Entry<V> e = table[i];
+            if (e == null) {
+                return null;
+            }
+            if (e.hash == hash && matches(e.bytes, array, offset, len)) {
+                return e;
+            }
+        }
+    }
+
+    private static <V> void insert(Entry<V>[] table, Entry<V> e) {
+        int mask = table.length - 1;
+        int i = e.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = e;
+    }
+
+    private static boolean matches(byte[] bytes, byte[] array, int offset, int len) {
+        if (bytes.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (bytes[i] != array[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] array, int offset, int len) {
+        int h = 0;
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + array[offset + i];
+        }
+        //打散低位, 减少开放寻址的聚集
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -16,8 +16,8 @@
 
 package com.qq.tars.protocol.tars;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -31,6 +31,9 @@ import com.qq.tars.protocol.tars.exc.TarsEncodeException;
  */
 public class TarsOutputStream {
 
+    //部分JVM在数组头部保留若干字节, 分配接近Integer.MAX_VALUE的数组会失败
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
     private ByteBuffer bs;
 
     public TarsOutputStream(ByteBuffer bs) {
@@ -59,13 +62,39 @@ public class TarsOutputStream {
         return newBytes;
     }
 
+    /**
+     * 与toByteArray相同, 但缓冲区恰好写满时(按TarsSize精确分配)直接返回底层数组而不再复制.
+     * 调用后不能再使用该输出流
+     * @return
+     */
+    public byte[] detachByteArray() {
+        if (bs.hasArray() && bs.arrayOffset() == 0 && bs.position() == bs.array().length) {
+            return bs.array();
+        }
+        return toByteArray();
+    }
+
     /**
      * 判断预留空间是否够用，不够就扩容(double)
      * @param len
      */
     public void reserve(int len) {
+        reserve((long) len);
+    }
+
+    /*
+     * 按long计算所需空间, 避免长度与元素大小相乘或扩容翻倍时int溢出
+     */
+    private void reserve(long len) {
+        if (len < 0) {
+            throw new TarsEncodeException("invalid length: " + len);
+        }
         if (bs.remaining() < len) {
-            int n = (bs.capacity() + len) * 2;
+            long required = bs.position() + len;
+            if (required > MAX_BUFFER_SIZE) {
+                throw new TarsEncodeException("encoded size is too large: " + required);
+            }
+            int n = (int) Math.min((bs.capacity() + len) * 2, MAX_BUFFER_SIZE);
             ByteBuffer bs2 = ByteBuffer.allocate(n);
             bs2.put(bs.array(), 0, bs.position());
             bs = bs2;
@@ -73,6 +102,13 @@ public class TarsOutputStream {
         }
     }
 
+    /*
+     * 以下write方法都按实际写入的字节数预留空间, 按TarsSize精确分配的缓冲区在编码过程中不会扩容
+     */
+    static int headSize(int tag) {
+        return tag < 15 ? 1 : 2;
+    }
+
     //| Type(4 bits) | Tag 1(4 bits) | Tag 2(1 byte) |
     public void writeHead(byte type, int tag) {
         if (tag < 15) {
@@ -93,7 +129,7 @@ public class TarsOutputStream {
     }
 
     public void write(byte b, int tag) {
-        reserve(3);
+        reserve(headSize(tag) + (b == 0 ? 0 : 1));
         if (b == 0) {
             writeHead(TarsStructBase.ZERO_TAG, tag);
         } else {
@@ -103,50 +139,50 @@ public class TarsOutputStream {
     }
 
     public void write(short n, int tag) {
-        reserve(4);
         if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
             write((byte) n, tag);
         } else {
+            reserve(headSize(tag) + 2);
             writeHead(TarsStructBase.SHORT, tag);
             bs.putShort(n);
         }
     }
 
     public void write(int n, int tag) {
-        reserve(6);
         if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
             write((short) n, tag);
         } else {
+            reserve(headSize(tag) + 4);
             writeHead(TarsStructBase.INT, tag);
             bs.putInt(n);
         }
     }
 
     public void write(long n, int tag) {
-        reserve(10);
         if (n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE) {
             write((int) n, tag);
         } else {
+            reserve(headSize(tag) + 8);
             writeHead(TarsStructBase.LONG, tag);
             bs.putLong(n);
         }
     }
 
     public void write(float n, int tag) {
-        reserve(6);
+        reserve(headSize(tag) + 4);
         writeHead(TarsStructBase.FLOAT, tag);
         bs.putFloat(n);
     }
 
     public void write(double n, int tag) {
-        reserve(10);
+        reserve(headSize(tag) + 8);
         writeHead(TarsStructBase.DOUBLE, tag);
         bs.putDouble(n);
     }
 
     public void writeStringByte(String s, int tag) {
         byte[] by = HexUtil.hexStr2Bytes(s);
-        reserve(10 + by.length);
+        reserve(10L + by.length);
         if (by.length > 255) {
             writeHead(TarsStructBase.STRING4, tag);
             bs.putInt(by.length);
@@ -159,7 +195,7 @@ public class TarsOutputStream {
     }
 
     public void writeByteString(String s, int tag) {
-        reserve(10 + s.length());
+        reserve(10L + s.length());
         byte[] by = HexUtil.hexStr2Bytes(s);
         if (by.length > 255) {
             writeHead(TarsStructBase.STRING4, tag);
@@ -173,13 +209,22 @@ public class TarsOutputStream {
     }
 
     public void write(String s, int tag) {
-        byte[] by;
-        try {
-            by = s.getBytes(sServerEncoding);
-        } catch (UnsupportedEncodingException e) {
-            by = s.getBytes();
+        //ASCII和UTF-8直接编码到缓冲区, 其余字符集走通用转换
+        int len = TarsStringCodec.encodedLength(s, getCharset());
+        if (len >= 0) {
+            reserve((long) headSize(tag) + (len > 255 ? 4 : 1) + len);
+            if (len > 255) {
+                writeHead(TarsStructBase.STRING4, tag);
+                bs.putInt(len);
+            } else {
+                writeHead(TarsStructBase.STRING1, tag);
+                bs.put((byte) len);
+            }
+            TarsStringCodec.encode(s, bs, len);
+            return;
         }
-        reserve(10 + by.length);
+        byte[] by = s.getBytes(getCharset());
+        reserve((long) headSize(tag) + (by.length > 255 ? 4 : 1) + by.length);
         if (by.length > 255) {
             writeHead(TarsStructBase.STRING4, tag);
             bs.putInt(by.length);
@@ -192,7 +237,7 @@ public class TarsOutputStream {
     }
 
     public <K, V> void write(Map<K, V> m, int tag) {
-        reserve(8);
+        reserve(headSize(tag));
         writeHead(TarsStructBase.MAP, tag);
         write(m == null ? 0 : m.size(), 0);
         if (m != null) {
@@ -204,59 +249,143 @@ public class TarsOutputStream {
     }
 
     public void write(boolean[] l, int tag) {
-        reserve(8);
+        reserveList(8L + l.length * 2L, l, tag);
         writeHead(TarsStructBase.LIST, tag);
         write(l.length, 0);
         for (boolean e : l)
-            write(e, 0);
+            putElement((byte) (e ? 0x01 : 0));
     }
 
     public void write(byte[] l, int tag) {
-        reserve(8 + l.length);
+        reserveSize(TarsSize.sizeOf(l, tag, null));
         writeHead(TarsStructBase.SIMPLE_LIST, tag);
         writeHead(TarsStructBase.BYTE, 0);
         write(l.length, 0);
         bs.put(l);
     }
 
+    /**
+     * 写入长度为len的byte[]字段头部并跳过内容区域, 返回内容区域的缓冲区视图, 由调用方直接填充
+     * (如protobuf的CodedOutputStream), 避免先编码为中间byte[]再复制
+     * @param len
+     * @param tag
+     * @return
+     */
+    public ByteBuffer writeByteArrayHead(int len, int tag) {
+        if (len < 0) {
+            throw new TarsEncodeException("invalid length: " + len);
+        }
+        reserveSize(TarsSize.sizeOfByteArray(len, tag));
+        writeHead(TarsStructBase.SIMPLE_LIST, tag);
+        writeHead(TarsStructBase.BYTE, 0);
+        write(len, 0);
+        ByteBuffer slot = bs.slice();
+        slot.limit(len);
+        bs.position(bs.position() + len);
+        return slot;
+    }
+
     public void write(short[] l, int tag) {
-        reserve(8);
+        reserveList(8L + l.length * 3L, l, tag);
         writeHead(TarsStructBase.LIST, tag);
         write(l.length, 0);
         for (short e : l)
-            write(e, 0);
+            putElement(e);
     }
 
     public void write(int[] l, int tag) {
-        reserve(8);
+        reserveList(8L + l.length * 5L, l, tag);
         writeHead(TarsStructBase.LIST, tag);
         write(l.length, 0);
         for (int e : l)
-            write(e, 0);
+            putElement(e);
     }
 
     public void write(long[] l, int tag) {
-        reserve(8); //这里为什么不直接 8+l.length*8
+        reserveList(8L + l.length * 9L, l, tag);
         writeHead(TarsStructBase.LIST, tag);
         write(l.length, 0);
         for (long e : l)
-            write(e, 0);
+            putElement(e);
     }
 
     public void write(float[] l, int tag) {
-        reserve(8);
+        reserveSize(TarsSize.sizeOf(l, tag, null));
         writeHead(TarsStructBase.LIST, tag);
         write(l.length, 0);
-        for (float e : l)
-            write(e, 0);
+        for (float e : l) {
+            bs.put(TarsStructBase.FLOAT);
+            bs.putFloat(e);
+        }
     }
 
     public void write(double[] l, int tag) {
-        reserve(8);
+        reserveSize(TarsSize.sizeOf(l, tag, null));
         writeHead(TarsStructBase.LIST, tag);
         write(l.length, 0);
-        for (double e : l)
-            write(e, 0);
+        for (double e : l) {
+            bs.put(TarsStructBase.DOUBLE);
+            bs.putDouble(e);
+        }
+    }
+
+    /*
+     * 剩余空间不够最坏情况时才逐个计算元素的实际大小来预留
+     */
+    private void reserveList(long maxLen, Object l, int tag) {
+        if (bs.remaining() < maxLen) {
+            reserveSize(TarsSize.sizeOf(l, tag, null));
+        }
+    }
+
+    /*
+     * 按TarsSize计算的大小预留, 基本类型数组只有编码后超出int范围时才返回UNKNOWN
+     */
+    private void reserveSize(int size) {
+        if (size < 0) {
+            throw new TarsEncodeException("encoded size is too large");
+        }
+        reserve(size);
+    }
+
+    /*
+     * 列表元素的tag固定为0, 头部只有类型一个字节. 以下方法按write(xxx, 0)相同的规则
+     * 选择最短的类型写入, 调用前需要一次性预留整个列表的空间
+     */
+    private void putElement(byte b) {
+        if (b == 0) {
+            bs.put(TarsStructBase.ZERO_TAG);
+        } else {
+            bs.put(TarsStructBase.BYTE);
+            bs.put(b);
+        }
+    }
+
+    private void putElement(short n) {
+        if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
+            putElement((byte) n);
+        } else {
+            bs.put(TarsStructBase.SHORT);
+            bs.putShort(n);
+        }
+    }
+
+    private void putElement(int n) {
+        if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
+            putElement((short) n);
+        } else {
+            bs.put(TarsStructBase.INT);
+            bs.putInt(n);
+        }
+    }
+
+    private void putElement(long n) {
+        if (n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE) {
+            putElement((int) n);
+        } else {
+            bs.put(TarsStructBase.LONG);
+            bs.putLong(n);
+        }
     }
 
     public <T> void write(T[] l, int tag) {
@@ -264,7 +393,7 @@ public class TarsOutputStream {
     }
 
     private void writeArray(Object[] l, int tag) {
-        reserve(8);
+        reserve(headSize(tag));
         writeHead(TarsStructBase.LIST, tag);
         write(l.length, 0);
         for (Object e : l)
@@ -272,7 +401,7 @@ public class TarsOutputStream {
     }
 
     public <T> void write(Collection<T> l, int tag) {
-        reserve(8);
+        reserve(headSize(tag));
         writeHead(TarsStructBase.LIST, tag);
         write(l == null ? 0 : l.size(), 0);
         if (l != null) {
@@ -282,10 +411,10 @@ public class TarsOutputStream {
     }
 
     public void write(TarsStructBase o, int tag) {
-        reserve(2);
+        reserve(headSize(tag));
         writeHead(TarsStructBase.STRUCT_BEGIN, tag);
         o.writeTo(this);
-        reserve(2);
+        reserve(1);
         writeHead(TarsStructBase.STRUCT_END, 0);
     }
 
@@ -365,11 +494,21 @@ public class TarsOutputStream {
 
     protected String sServerEncoding = "UTF-8";
 
+    private Charset charset;
+
     public int setServerEncoding(String se) {
         sServerEncoding = se;
+        charset = null;
         return 0;
     }
 
+    private Charset getCharset() {
+        if (charset == null) {
+            charset = TarsStringCodec.charset(sServerEncoding);
+        }
+        return charset;
+    }
+
     public static void main(String[] args) {
         TarsOutputStream os = new TarsOutputStream();
         long n = 0x1234567890012345L;
@@ -33,7 +33,7 @@ public class TarsOutputStreamExt {
             throw new TarsEncodeException("the JavaBean[" + e.getClass().getSimpleName() + "] no annotation Struct");
         }
 
-        jos.reserve(2);
+        jos.reserve(TarsOutputStream.headSize(tag));
         jos.writeHead(TarsStructBase.STRUCT_BEGIN, tag);
         List<TarsStrutPropertyInfo> propertysList = info.getPropertyList();
         if (!CommonUtils.isEmptyCollection(propertysList)) {
@@ -55,7 +55,7 @@ public class TarsOutputStreamExt {
             }
         }
 
-        jos.reserve(2);
+        jos.reserve(1);
         jos.writeHead(TarsStructBase.STRUCT_END, 0);
     }
 }
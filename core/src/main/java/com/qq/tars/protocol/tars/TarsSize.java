@@ -0,0 +1,312 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.protocol.tars;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 计算按tars编码后的字节数, 规则与TarsOutputStream的write方法一一对应, 用于编码前一次性分配缓冲区.
+ * 返回-1表示无法预先计算(非ASCII兼容字符集中的非ASCII字符串, 未实现TarsSized的结构体等)
+ */
+public final class TarsSize {
+
+    public static final int UNKNOWN = -1;
+
+    private TarsSize() {
+    }
+
+    public static Charset charset(String charsetName) {
+        return TarsStringCodec.charset(charsetName);
+    }
+
+    /**
+     * 累加两个大小, 任一未知或溢出时返回UNKNOWN
+     * @param a
+     * @param b
+     * @return
+     */
+    public static int add(int a, int b) {
+        int n = a + b;
+        return a < 0 || b < 0 || n < 0 ? UNKNOWN : n;
+    }
+
+    /*
+     * 按long累加的大小转换为int, 超出int范围时返回UNKNOWN
+     */
+    private static int toSize(long size) {
+        return size < 0 || size > Integer.MAX_VALUE ? UNKNOWN : (int) size;
+    }
+
+    public static int sizeOfHead(int tag) {
+        if (tag < 15) {
+            return 1;
+        } else if (tag < 256) {
+            return 2;
+        }
+        //交给编码时抛出异常
+        return UNKNOWN;
+    }
+
+    public static int sizeOf(boolean b, int tag, Charset charset) {
+        return sizeOf((byte) (b ? 0x01 : 0), tag, charset);
+    }
+
+    public static int sizeOf(byte b, int tag, Charset charset) {
+        return add(sizeOfHead(tag), b == 0 ? 0 : 1);
+    }
+
+    public static int sizeOf(short n, int tag, Charset charset) {
+        if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
+            return sizeOf((byte) n, tag, charset);
+        }
+        return add(sizeOfHead(tag), 2);
+    }
+
+    public static int sizeOf(int n, int tag, Charset charset) {
+        if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
+            return sizeOf((short) n, tag, charset);
+        }
+        return add(sizeOfHead(tag), 4);
+    }
+
+    public static int sizeOf(long n, int tag, Charset charset) {
+        if (n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE) {
+            return sizeOf((int) n, tag, charset);
+        }
+        return add(sizeOfHead(tag), 8);
+    }
+
+    public static int sizeOf(float n, int tag, Charset charset) {
+        return add(sizeOfHead(tag), 4);
+    }
+
+    public static int sizeOf(double n, int tag, Charset charset) {
+        return add(sizeOfHead(tag), 8);
+    }
+
+    public static int sizeOf(String s, int tag, Charset charset) {
+        if (s == null) {
+            return UNKNOWN;
+        }
+        int len = TarsStringCodec.encodedLength(s, charset);
+        if (len < 0) {
+            return UNKNOWN;
+        }
+        return add(sizeOfHead(tag), (len > 255 ? 4 : 1) + len);
+    }
+
+    public static <K, V> int sizeOf(Map<K, V> m, int tag, Charset charset) {
+        int size = add(sizeOfHead(tag), sizeOf(m == null ? 0 : m.size(), 0, charset));
+        if (m != null) {
+            for (Map.Entry<K, V> en : m.entrySet()) {
+                size = add(size, sizeOf(en.getKey(), 0, charset));
+                size = add(size, sizeOf(en.getValue(), 1, charset));
+                if (size < 0) {
+                    return UNKNOWN;
+                }
+            }
+        }
+        return size;
+    }
+
+    public static int sizeOf(boolean[] l, int tag, Charset charset) {
+        int head = add(sizeOfHead(tag), sizeOf(l.length, 0, charset));
+        if (head < 0) {
+            return UNKNOWN;
+        }
+        long size = head;
+        for (boolean e : l)
+            size += e ? 2 : 1;
+        return toSize(size);
+    }
+
+    public static int sizeOf(byte[] l, int tag, Charset charset) {
+        return sizeOfByteArray(l.length, tag);
+    }
+
+    /**
+     * 长度为len的byte[]字段编码后的字节数
+     * @param len
+     * @param tag
+     * @return
+     */
+    public static int sizeOfByteArray(int len, int tag) {
+        if (len < 0) {
+            return UNKNOWN;
+        }
+        return add(add(sizeOfHead(tag), 1 + sizeOf(len, 0, null)), len);
+    }
+
+    public static int sizeOf(short[] l, int tag, Charset charset) {
+        int head = add(sizeOfHead(tag), sizeOf(l.length, 0, charset));
+        if (head < 0) {
+            return UNKNOWN;
+        }
+        long size = head;
+        for (short e : l)
+            size += sizeOf(e, 0, charset);
+        return toSize(size);
+    }
+
+    public static int sizeOf(int[] l, int tag, Charset charset) {
+        int head = add(sizeOfHead(tag), sizeOf(l.length, 0, charset));
+        if (head < 0) {
+            return UNKNOWN;
+        }
+        long size = head;
+        for (int e : l)
+            size += sizeOf(e, 0, charset);
+        return toSize(size);
+    }
+
+    public static int sizeOf(long[] l, int tag, Charset charset) {
+        int head = add(sizeOfHead(tag), sizeOf(l.length, 0, charset));
+        if (head < 0) {
+            return UNKNOWN;
+        }
+        long size = head;
+        for (long e : l)
+            size += sizeOf(e, 0, charset);
+        return toSize(size);
+    }
+
+    public static int sizeOf(float[] l, int tag, Charset charset) {
+        int head = add(sizeOfHead(tag), sizeOf(l.length, 0, charset));
+        return head < 0 ? UNKNOWN : toSize(head + l.length * 5L);
+    }
+
+    public static int sizeOf(double[] l, int tag, Charset charset) {
+        int head = add(sizeOfHead(tag), sizeOf(l.length, 0, charset));
+        return head < 0 ? UNKNOWN : toSize(head + l.length * 9L);
+    }
+
+    public static <T> int sizeOf(T[] l, int tag, Charset charset) {
+        return sizeOfArray(l, tag, charset);
+    }
+
+    private static int sizeOfArray(Object[] l, int tag, Charset charset) {
+        int size = add(sizeOfHead(tag), sizeOf(l.length, 0, charset));
+        for (Object e : l) {
+            size = add(size, sizeOf(e, 0, charset));
+            if (size < 0) {
+                return UNKNOWN;
+            }
+        }
+        return size;
+    }
+
+    public static <T> int sizeOf(Collection<T> l, int tag, Charset charset) {
+        int size = add(sizeOfHead(tag), sizeOf(l == null ? 0 : l.size(), 0, charset));
+        if (l != null) {
+            for (T e : l) {
+                size = add(size, sizeOf(e, 0, charset));
+                if (size < 0) {
+                    return UNKNOWN;
+                }
+            }
+        }
+        return size;
+    }
+
+    public static int sizeOf(TarsStructBase o, int tag, Charset charset) {
+        return sizeOfStruct(o, tag, charset);
+    }
+
+    //STRUCT_BEGIN头 + 字段 + STRUCT_END头(tag为0, 一个字节)
+    private static int sizeOfStruct(TarsSized o, int tag, Charset charset) {
+        return add(add(sizeOfHead(tag), o.serializedSize(charset)), 1);
+    }
+
+    public static int sizeOf(Byte o, int tag, Charset charset) {
+        return sizeOf(o.byteValue(), tag, charset);
+    }
+
+    public static int sizeOf(Boolean o, int tag, Charset charset) {
+        return sizeOf(o.booleanValue(), tag, charset);
+    }
+
+    public static int sizeOf(Short o, int tag, Charset charset) {
+        return sizeOf(o.shortValue(), tag, charset);
+    }
+
+    public static int sizeOf(Integer o, int tag, Charset charset) {
+        return sizeOf(o.intValue(), tag, charset);
+    }
+
+    public static int sizeOf(Long o, int tag, Charset charset) {
+        return sizeOf(o.longValue(), tag, charset);
+    }
+
+    public static int sizeOf(Float o, int tag, Charset charset) {
+        return sizeOf(o.floatValue(), tag, charset);
+    }
+
+    public static int sizeOf(Double o, int tag, Charset charset) {
+        return sizeOf(o.doubleValue(), tag, charset);
+    }
+
+    public static int sizeOf(Object o, int tag, Charset charset) {
+        if (o == null) {
+            return UNKNOWN;
+        } else if (o instanceof Byte) {
+            return sizeOf(((Byte) o).byteValue(), tag, charset);
+        } else if (o instanceof Boolean) {
+            return sizeOf(((Boolean) o).booleanValue(), tag, charset);
+        } else if (o instanceof Short) {
+            return sizeOf(((Short) o).shortValue(), tag, charset);
+        } else if (o instanceof Integer) {
+            return sizeOf(((Integer) o).intValue(), tag, charset);
+        } else if (o instanceof Long) {
+            return sizeOf(((Long) o).longValue(), tag, charset);
+        } else if (o instanceof Float) {
+            return sizeOf(((Float) o).floatValue(), tag, charset);
+        } else if (o instanceof Double) {
+            return sizeOf(((Double) o).doubleValue(), tag, charset);
+        } else if (o instanceof String) {
+            return sizeOf((String) o, tag, charset);
+        } else if (o instanceof Map) {
+            return sizeOf((Map<?, ?>) o, tag, charset);
+        } else if (o instanceof List) {
+            return sizeOf((List<?>) o, tag, charset);
+        } else if (o instanceof TarsSized) {
+            return sizeOfStruct((TarsSized) o, tag, charset);
+        } else if (o instanceof byte[]) {
+            return sizeOf((byte[]) o, tag, charset);
+        } else if (o instanceof boolean[]) {
+            return sizeOf((boolean[]) o, tag, charset);
+        } else if (o instanceof short[]) {
+            return sizeOf((short[]) o, tag, charset);
+        } else if (o instanceof int[]) {
+            return sizeOf((int[]) o, tag, charset);
+        } else if (o instanceof long[]) {
+            return sizeOf((long[]) o, tag, charset);
+        } else if (o instanceof float[]) {
+            return sizeOf((float[]) o, tag, charset);
+        } else if (o instanceof double[]) {
+            return sizeOf((double[]) o, tag, charset);
+        } else if (o.getClass().isArray()) {
+            return sizeOfArray((Object[]) o, tag, charset);
+        } else if (o instanceof Collection) {
+            return sizeOf((Collection<?>) o, tag, charset);
+        }
+        //未生成serializedSize的JavaBean
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.protocol.tars;
+
+import java.nio.charset.Charset;
+
+/**
+ * 可以预先计算编码后字节数的结构体, tars2java生成的结构体都实现了该接口
+ */
+public interface TarsSized {
+
+    /**
+     * 按指定字符集编码后的字节数, 不含结构体自身的STRUCT_BEGIN/STRUCT_END头
+     * @param charset
+     * @return 字节数, TarsSize.UNKNOWN表示无法预先计算
+     */
+    int serializedSize(Charset charset);
+}
@@ -0,0 +1,273 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.protocol.tars;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字符串编解码. 对ASCII和UTF-8直接在缓冲区上编解码, 避免中间byte[]和通用字符集转换;
+ * 对请求包头中高频重复的短字符串(servant名, 函数名, context和status的键)使用有界缓存跳过解码, 业务数据中的字符串不经过缓存
+ */
+final class TarsStringCodec {
+
+    //缓存的最大字符串字节数
+    private static final int CACHE_MAX_LENGTH = 64;
+
+    //缓存槽位数, 通过-Dcom.qq.tars.protocol.stringCacheSize配置, 0表示关闭缓存
+    private static final int CACHE_SIZE = normalizeCacheSize(Integer.getInteger("com.qq.tars.protocol.stringCacheSize", 1024));
+
+    private static final CacheEntry[] cache = CACHE_SIZE > 0 ? new CacheEntry[CACHE_SIZE] : null;
+
+    private static final ConcurrentHashMap<String, Charset> charsets = new ConcurrentHashMap<String, Charset>();
+
+    private TarsStringCodec() {
+    }
+
+    /**
+     * 查找字符集, 不支持的字符集使用平台默认字符集, 与new String(byte[])的行为一致
+     * @param charsetName
+     * @return
+     */
+    static Charset charset(String charsetName) {
+        Charset charset = charsets.get(charsetName);
+        if (charset == null) {
+            try {
+                charset = Charset.forName(charsetName);
+            } catch (Exception e) {
+                charset = Charset.defaultCharset();
+            }
+            charsets.putIfAbsent(charsetName, charset);
+        }
+        return charset;
+    }
+
+    /**
+     * 从缓冲区当前位置解码len个字节, 并移动position
+     * @param bs
+     * @param len
+     * @param charset
+     * @return
+     */
+    static String decode(ByteBuffer bs, int len, Charset charset) {
+        return decode(bs, len, charset, false);
+    }
+
+    /**
+     * 与decode相同, 但先在短字符串缓存中查找, 只用于servant名, 函数名, context和status的键等重复出现的名字
+     * @param bs
+     * @param len
+     * @param charset
+     * @return
+     */
+    static String decodeName(ByteBuffer bs, int len, Charset charset) {
+        return decode(bs, len, charset, true);
+    }
+
+    private static String decode(ByteBuffer bs, int len, Charset charset, boolean cached) {
+        if (len == 0) {
+            return "";
+        }
+        if (bs.remaining() < len) {
+            throw new BufferUnderflowException();
+        }
+        byte[] array;
+        int offset;
+        if (bs.hasArray()) {
+            array = bs.array();
+            offset = bs.arrayOffset() + bs.position();
+        } else {
+            array = new byte[len];
+            bs.duplicate().get(array);
+            offset = 0;
+        }
+        bs.position(bs.position() + len);
+
+        if (cached && cache != null && len <= CACHE_MAX_LENGTH) {
+            int hash = hash(array, offset, len);
+            int slot = hash & (CACHE_SIZE - 1);
+            CacheEntry entry = cache[slot];
+            if (entry != null && entry.hash == hash && (entry.charset == charset || (entry.ascii && isAsciiCompatible(charset)))
+                    && entry.matches(array, offset, len)) {
+                return entry.value;
+            }
+            boolean ascii = isAscii(array, offset, len) && isAsciiCompatible(charset);
+            String value = decode(array, offset, len, charset, ascii);
+            cache[slot] = new CacheEntry(hash, copyOf(array, offset, len), value, charset, ascii);
+            return value;
+        }
+        return decode(array, offset, len, charset, isAscii(array, offset, len) && isAsciiCompatible(charset));
+    }
+
+    private static String decode(byte[] array, int offset, int len, Charset charset, boolean ascii) {
+        //ASCII在UTF-8, GBK等常用字符集下编码相同, 直接按单字节拷贝
+        if (ascii) {
+            return new String(array, offset, len, StandardCharsets.ISO_8859_1);
+        }
+        return new String(array, offset, len, charset);
+    }
+
+    /**
+     * 计算字符串编码后的字节数, 无法直接编码时返回-1
+     * @param s
+     * @param charset
+     * @return
+     */
+    static int encodedLength(String s, Charset charset) {
+        int n = s.length();
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            int len = n;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    continue;
+                }
+                if (c < 0x800) {
+                    len += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    //代理对共4个字节
+                    len += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    len += 2;
+                }
+                //孤立的代理字符按'?'编码, 占1个字节
+            }
+            return len;
+        }
+        if (!isAsciiCompatible(charset)) {
+            return -1;
+        }
+        for (int i = 0; i < n; i++) {
+            if (s.charAt(i) >= 0x80) {
+                return -1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 将字符串直接编码到缓冲区中, 调用前需通过encodedLength计算长度并预留空间
+     * @param s
+     * @param bs
+     * @param len encodedLength的返回值
+     */
+    static void encode(String s, ByteBuffer bs, int len) {
+        if (!bs.hasArray()) {
+            //此时只可能是UTF-8或纯ASCII, 两者按UTF-8编码结果相同
+            bs.put(s.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        int n = s.length();
+        byte[] array = bs.array();
+        int pos = bs.arrayOffset() + bs.position();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                array[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                array[pos++] = (byte) (0xc0 | (c >> 6));
+                array[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                array[pos++] = (byte) (0xf0 | (cp >> 18));
+                array[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                array[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                array[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                array[pos++] = (byte) '?';
+            } else {
+                array[pos++] = (byte) (0xe0 | (c >> 12));
+                array[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                array[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        bs.position(bs.position() + len);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name();
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset) || "GBK".equals(name) || "GB18030".equals(name) || "GB2312".equals(name);
+    }
+
+    private static boolean isAscii(byte[] array, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            if (array[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] array, int offset, int len) {
+        int h = len;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            h = 31 * h + array[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static byte[] copyOf(byte[] array, int offset, int len) {
+        byte[] bytes = new byte[len];
+        System.arraycopy(array, offset, bytes, 0, len);
+        return bytes;
+    }
+
+    private static int normalizeCacheSize(int size) {
+        if (size <= 0) {
+            return 0;
+        }
+        int n = Integer.highestOneBit(size);
+        return n < size ? n << 1 : n;
+    }
+
+    /**
+     * 缓存项不可变, 槽位之间的竞争只会导致缓存未命中
+     */
+    private static final class CacheEntry {
+
+        final int hash;
+        final byte[] bytes;
+        final String value;
+        final Charset charset;
+        final boolean ascii;
+
+        CacheEntry(int hash, byte[] bytes, String value, Charset charset, boolean ascii) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+            this.charset = charset;
+            this.ascii = ascii;
+        }
+
+        boolean matches(byte[] array, int offset, int len) {
+            if (bytes.length != len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (bytes[i] != array[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
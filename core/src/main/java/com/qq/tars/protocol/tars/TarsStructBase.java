@@ -16,11 +16,13 @@
 
 package com.qq.tars.protocol.tars;
 
+import java.nio.charset.Charset;
+
 /**
  * Tars 支持的14个类型
  */
 @SuppressWarnings("serial")
-public abstract class TarsStructBase implements java.io.Serializable {
+public abstract class TarsStructBase implements java.io.Serializable, TarsSized {
 
     public static final byte BYTE = 0;
     public static final byte SHORT = 1;
@@ -68,17 +70,23 @@ public abstract class TarsStructBase implements java.io.Serializable {
     public void setFieldByName(String name, Object value) {
     }
 
+    /**
+     * 子类可以覆盖以便编码前一次性分配缓冲区, 默认无法预先计算
+     */
+    public int serializedSize(Charset charset) {
+        return TarsSize.UNKNOWN;
+    }
+
     public byte[] toByteArray() {
-        TarsOutputStream os = new TarsOutputStream();
-        writeTo(os);
-        return os.toByteArray();
+        return toByteArray("UTF-8");
     }
 
     public byte[] toByteArray(String encoding) {
-        TarsOutputStream os = new TarsOutputStream();
+        int size = serializedSize(TarsSize.charset(encoding));
+        TarsOutputStream os = size >= 0 ? new TarsOutputStream(size) : new TarsOutputStream();
         os.setServerEncoding(encoding);
         writeTo(os);
-        return os.toByteArray();
+        return os.detachByteArray();
     }
 
     public String toString() {
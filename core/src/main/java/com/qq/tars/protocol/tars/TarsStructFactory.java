@@ -0,0 +1,111 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.protocol.tars;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.qq.tars.protocol.tars.exc.TarsDecodeException;
+
+/**
+ * 结构体实例工厂. 解码时通过生成代码注册的Creator创建结构体, 避免每个元素都走Class.newInstance();
+ * 未注册的类型使用缓存的构造器MethodHandle. Creator保存在ClassValue中, 不会阻止应用类和类加载器被卸载
+ */
+public final class TarsStructFactory {
+
+    public interface Creator<T> {
+
+        T create();
+    }
+
+    private static final ClassValue<CreatorHolder> creators = new ClassValue<CreatorHolder>() {
+
+        @Override
+        protected CreatorHolder computeValue(Class<?> type) {
+            return new CreatorHolder();
+        }
+    };
+
+    private TarsStructFactory() {
+    }
+
+    /**
+     * 注册结构体的Creator, 由tars2java生成的结构体在类初始化时调用
+     * @param clazz
+     * @param creator
+     */
+    public static <T> void register(Class<T> clazz, Creator<? extends T> creator) {
+        creators.get(clazz).creator.set(creator);
+    }
+
+    /**
+     * 创建结构体实例
+     * @param clazz
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T newInstance(Class<T> clazz) {
+        AtomicReference<Creator<?>> ref = creators.get(clazz).creator;
+        Creator<?> creator = ref.get();
+        if (creator == null) {
+            //创建构造器时可能触发结构体的类初始化并注册Creator, 已注册的优先
+            creator = createCreator(clazz);
+            if (!ref.compareAndSet(null, creator)) {
+                creator = ref.get();
+            }
+        }
+        return (T) creator.create();
+    }
+
+    private static Creator<?> createCreator(final Class<?> clazz) {
+        try {
+            final MethodHandle constructor = MethodHandles.lookup().findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            return new Creator<Object>() {
+
+                public Object create() {
+                    try {
+                        return constructor.invokeExact();
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        throw new TarsDecodeException("instance Class: " + clazz.getName() + " with ex: " + e.getMessage());
+                    }
+                }
+            };
+        } catch (Exception e) {
+            //无法访问的构造器保持原有的反射行为, 由newInstance抛出具体的异常
+            return new Creator<Object>() {
+
+                public Object create() {
+                    try {
+                        return clazz.newInstance();
+                    } catch (Exception e) {
+                        throw new TarsDecodeException("instance Class: " + clazz.getName() + " with ex: " + e.getMessage());
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class CreatorHolder {
+
+        final AtomicReference<Creator<?>> creator = new AtomicReference<Creator<?>>();
+    }
+}
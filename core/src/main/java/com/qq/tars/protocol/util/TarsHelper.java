@@ -97,6 +97,14 @@ public class TarsHelper {
 
     public static final String STATUS_RESULT_DESC = "STATUS_RESULT_DESC";
 
+    //批量请求包的函数名, 包体是多个普通请求包
+    public static final String BATCH = "tars_batch";
+
+    //客户端在status中携带该字段询问服务端是否支持批量请求, 支持的服务端在响应的status中置为BATCH_SUPPORTED
+    public static final String STATUS_BATCH = "TARS_BATCH";
+
+    public static final String BATCH_SUPPORTED = "1";
+
     public static final Boolean STAMP_BOOLEAN = Boolean.TRUE;
     public static final Byte STAMP_BYTE = Byte.valueOf((byte) 0);
     public static final Short STAMP_SHORT = Short.valueOf((short) 0);
@@ -119,7 +127,13 @@ public class TarsHelper {
         STAMP_MAP.put("", "");
     }
 
-    private static Map<Class<?>, TarsStructInfo> tarsStructCache = new HashMap<Class<?>, TarsStructInfo>();
+    //按类缓存结构体信息, 不同类型首次解析时互不阻塞
+    private static final ClassValue<TarsStructInfo> tarsStructCache = new ClassValue<TarsStructInfo>() {
+        @Override
+        protected TarsStructInfo computeValue(Class<?> type) {
+            return createStructInfo(type);
+        }
+    };
 
     private static Comparator<Field> tarsStructFieldsListComparator = new Comparator<Field>() {
 
@@ -260,65 +274,64 @@ public class TarsHelper {
     }
 
     public static TarsStructInfo getStructInfo(Class<?> clazz) {
-        TarsStructInfo tarsStructInfo = tarsStructCache.get(clazz);
-        if (tarsStructInfo == null) {
-            synchronized (TarsHelper.class) {
-                tarsStructInfo = tarsStructCache.get(clazz);
-                if (tarsStructInfo == null) {
-                    tarsStructInfo = new TarsStructInfo();
-                    Field[] fields = clazz.getDeclaredFields();
-                    if (!CommonUtils.isEmptyArray(fields)) {
-                        List<Field> fieldList = new ArrayList<Field>(fields.length);
-
-                        for (Field field : fields) {
-                            if (field.isAnnotationPresent(TarsStructProperty.class)) fieldList.add(field);
-                        }
-
-                        try {
-                            Collections.sort(fieldList, tarsStructFieldsListComparator);
-                        } catch (Exception e) {
-                            throw new RuntimeException("class[" + clazz + "] , Annotation StructProperty order error: " + e.getMessage(), e);
-                        }
-
-                        List<TarsStrutPropertyInfo> propertyList = new ArrayList<TarsStrutPropertyInfo>(fieldList.size());
-                        int order = 0;
-                        Object bean = CommonUtils.newInstance(clazz);
-                        for (Field field : fieldList) {
-                            TarsStrutPropertyInfo propertyInfo = new TarsStrutPropertyInfo();
-                            Type type = field.getGenericType();
-                            Object stamp = null;
-                            try {
-                                stamp = getParameterStamp(type);
-                            } catch (Exception e) {
-                                throw new RuntimeException("class[" + clazz + "] , Field[" + field.getName() + "] create stamp failed:" + e.getMessage(), e);
-                            }
-                            propertyInfo.setStamp(stamp);
-                            propertyInfo.setName(field.getName());
-
-                            TarsStructProperty propertyAnnotation = field.getAnnotation(TarsStructProperty.class);
-                            order = propertyAnnotation.order();
-                            propertyInfo.setOrder(order);
-                            propertyInfo.setRequire(propertyAnnotation.isRequire());
-                            propertyInfo.setComment(propertyAnnotation.comment());
-
-                            propertyInfo.setDefaultValue(getPropertyDefaultValue(BeanAccessor.getBeanValue(bean, field.getName())));
-
-                            propertyList.add(propertyInfo);
-                        }
-                        tarsStructInfo.setPropertyList(propertyList);
-                        TarsStruct struct = clazz.getAnnotation(TarsStruct.class);
-                        if (struct != null) {
-                            String comment = struct.comment();
-                            if (!CommonUtils.isEmpty(comment)) {
-                                tarsStructInfo.setComment(comment);
-                            }
-                        }
-                    }
-                    tarsStructCache.put(clazz, tarsStructInfo);
+        return tarsStructCache.get(clazz);
+    }
+
+    /**
+     * 解析结构体的字段信息, 结果发布后不再修改
+     * @param clazz
+     * @return
+     */
+    private static TarsStructInfo createStructInfo(Class<?> clazz) {
+        TarsStructInfo tarsStructInfo = new TarsStructInfo();
+        Field[] fields = clazz.getDeclaredFields();
+        if (!CommonUtils.isEmptyArray(fields)) {
+            List<Field> fieldList = new ArrayList<Field>(fields.length);
+
+            for (Field field : fields) {
+                if (field.isAnnotationPresent(TarsStructProperty.class)) fieldList.add(field);
+            }
+
+            try {
+                Collections.sort(fieldList, tarsStructFieldsListComparator);
+            } catch (Exception e) {
+                throw new RuntimeException("class[" + clazz + "] , Annotation StructProperty order error: " + e.getMessage(), e);
+            }
+
+            List<TarsStrutPropertyInfo> propertyList = new ArrayList<TarsStrutPropertyInfo>(fieldList.size());
+            int order = 0;
+            Object bean = CommonUtils.newInstance(clazz);
+            for (Field field : fieldList) {
+                TarsStrutPropertyInfo propertyInfo = new TarsStrutPropertyInfo();
+                Type type = field.getGenericType();
+                Object stamp = null;
+                try {
+                    stamp = getParameterStamp(type);
+                } catch (Exception e) {
+                    throw new RuntimeException("class[" + clazz + "] , Field[" + field.getName() + "] create stamp failed:" + e.getMessage(), e);
+                }
+                propertyInfo.setStamp(stamp);
+                propertyInfo.setName(field.getName());
+
+                TarsStructProperty propertyAnnotation = field.getAnnotation(TarsStructProperty.class);
+                order = propertyAnnotation.order();
+                propertyInfo.setOrder(order);
+                propertyInfo.setRequire(propertyAnnotation.isRequire());
+                propertyInfo.setComment(propertyAnnotation.comment());
+
+                propertyInfo.setDefaultValue(getPropertyDefaultValue(BeanAccessor.getBeanValue(bean, field.getName())));
+
+                propertyList.add(propertyInfo);
+            }
+            tarsStructInfo.setPropertyList(Collections.unmodifiableList(propertyList));
+            TarsStruct struct = clazz.getAnnotation(TarsStruct.class);
+            if (struct != null) {
+                String comment = struct.comment();
+                if (!CommonUtils.isEmpty(comment)) {
+                    tarsStructInfo.setComment(comment);
                 }
             }
         }
-
         return tarsStructInfo;
     }
 
@@ -399,6 +412,10 @@ public class TarsHelper {
         return methodName != null && methodName.equals("tars_ping");
     }
 
+    public static boolean isBatch(String methodName) {
+        return BATCH.equals(methodName);
+    }
+
     public static boolean isHolder(Annotation[] annotations) {
         if (annotations == null || annotations.length < 0) {
             return false;
@@ -19,6 +19,8 @@ package com.qq.tars.rpc.protocol;
 import com.qq.tars.net.core.Request;
 import com.qq.tars.net.core.Session;
 
+import java.util.List;
+
 public abstract class ServantRequest extends Request {
 
     protected String servantName;
@@ -43,4 +45,37 @@ public abstract class ServantRequest extends Request {
     public void setFunctionName(String functionName) {
         this.functionName = functionName;
     }
+
+    /**
+     * 本次请求的超时时间(毫秒), 小于等于0时使用连接上配置的超时时间
+     * @return
+     */
+    public int getTimeout() {
+        return 0;
+    }
+
+    /**
+     * 是否可以和同一连接上的其他请求合并为一个批量请求包发送
+     * @return
+     */
+    public boolean isBatchable() {
+        return false;
+    }
+
+    /**
+     * 在请求中询问服务端是否支持批量请求, 请求没有响应时不询问
+     * @return 已询问返回true
+     */
+    public boolean probeBatchSupport() {
+        return false;
+    }
+
+    /**
+     * 把同一连接上的多个请求合并为一个批量请求包
+     * @param requests
+     * @return 不支持批量请求时返回null
+     */
+    public ServantRequest newBatchRequest(List<ServantRequest> requests) {
+        return null;
+    }
 }
@@ -24,4 +24,12 @@ public abstract class ServantResponse extends Response {
     public ServantResponse(Session session) {
         super(session);
     }
+
+    /**
+     * 询问请求的响应中服务端是否声明支持批量请求
+     * @return 不是询问请求的响应或无法判断时返回null
+     */
+    public Boolean getBatchSupport() {
+        return null;
+    }
 }
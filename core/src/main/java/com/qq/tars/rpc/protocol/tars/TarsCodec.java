@@ -28,6 +28,7 @@ import com.qq.tars.net.core.Session;
 import com.qq.tars.net.protocol.ProtocolException;
 import com.qq.tars.protocol.tars.TarsInputStream;
 import com.qq.tars.protocol.tars.TarsOutputStream;
+import com.qq.tars.protocol.tars.TarsSize;
 import com.qq.tars.protocol.tars.support.TarsMethodInfo;
 import com.qq.tars.protocol.tars.support.TarsMethodParameterInfo;
 import com.qq.tars.protocol.util.TarsHelper;
@@ -40,6 +41,7 @@ import com.qq.tars.rpc.protocol.tup.UniAttribute;
 
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.*;
 
 /**
@@ -57,8 +59,8 @@ public class TarsCodec extends Codec {
             return null;
         }
 
-        TarsOutputStream jos = new TarsOutputStream();
-        jos.setServerEncoding(charsetName);
+        int resultSize = response.getVersion() == TarsHelper.VERSION ? sizeOfResult(response, charsetName) : TarsSize.UNKNOWN;
+        TarsOutputStream jos = newOutputStream(resultSize >= 0 ? sizeOfResponse(response, resultSize) : TarsSize.UNKNOWN, charsetName);
         try {
             jos.getByteBuffer().putInt(0);
             jos.write(response.getVersion(), 1);
@@ -70,7 +72,11 @@ public class TarsCodec extends Codec {
                 jos.write(response.getMessageType(), 4);
                 jos.write(response.getRet(), 5);
                 //返回值
-                jos.write(encodeResult(response, charsetName), 6);
+                if (resultSize >= 0) {
+                    writeResult(jos, response, charsetName, resultSize, 6);
+                } else {
+                    jos.write(encodeResult(response, charsetName), 6);
+                }
                 if (response.getStatus() != null) {
                     jos.write(response.getStatus(), 7);
                 }
@@ -83,8 +89,11 @@ public class TarsCodec extends Codec {
                 String servantName = response.getRequest().getServantName();
                 jos.write(servantName, 5);
                 jos.write(response.getRequest().getFunctionName(), 6);
-                //返回值
-                jos.write(encodeWupResult(response, charsetName), 7);
+                //返回值, 属性大小可以预先计算时直接写入响应包
+                Map<String, Object> attributes = wupAttributes(response);
+                if (!UniAttribute.write(jos, attributes, charsetName, 7)) {
+                    jos.write(encodeWupResult(response, charsetName), 7);
+                }
                 jos.write(response.getTimeout(), 8);
                 if (response.getContext() != null) {
                     jos.write(response.getContext(), 9);
@@ -123,57 +132,158 @@ public class TarsCodec extends Codec {
             return new byte[]{};
         }
 
-        TarsOutputStream ajos = new TarsOutputStream();
-        ajos.setServerEncoding(charsetName);
-
         //返回值
         int ret = response.getRet();
-        Map<String, TarsMethodInfo> methodInfoMap = AnalystManager.getInstance().getMethodMapByName(request.getServantName());
-        if (ret == TarsHelper.SERVERSUCCESS && methodInfoMap != null) {
-            TarsMethodInfo methodInfo = methodInfoMap.get(request.getFunctionName());
-            TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
-            if (returnInfo != null && returnInfo.getType() != Void.TYPE && response.getResult() != null) {
-                try {
-                    ajos.write(response.getResult(), methodInfo.getReturnInfo().getOrder());
-                } catch (Exception e) {
-                    System.err.println("server encodec response result:" + response.getResult() + " with ex:" + e);
+        TarsMethodInfo methodInfo = ret == TarsHelper.SERVERSUCCESS ? resolveMethodInfo(request) : null;
+        if (methodInfo == null) {
+            return new byte[]{};
+        }
+
+        TarsOutputStream ajos = newOutputStream(sizeOfEncodedResult(response, methodInfo, charsetName), charsetName);
+        TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
+        if (returnInfo != null && returnInfo.getType() != Void.TYPE && response.getResult() != null) {
+            try {
+                ajos.write(response.getResult(), methodInfo.getReturnInfo().getOrder());
+            } catch (Exception e) {
+                System.err.println("server encodec response result:" + response.getResult() + " with ex:" + e);
+            }
+        }
+
+        Object value = null;
+        List<TarsMethodParameterInfo> parametersList = methodInfo.getParametersList();
+        for (TarsMethodParameterInfo parameterInfo : parametersList) {
+            //out返回值，使用Holder包装
+            if (TarsHelper.isHolder(parameterInfo.getAnnotations())) {
+                value = request.getMethodParameters()[parameterInfo.getOrder() - 1];
+                if (value != null) {
+                    try {
+                        ajos.write(TarsHelper.getHolderValue(value), parameterInfo.getOrder());
+                    } catch (Exception e) {
+                        System.err.println("server encodec response holder:" + value + " with ex:" + e);
+                    }
                 }
             }
+        }
+        return ajos.detachByteArray();
+    }
 
-            Object value = null;
-            List<TarsMethodParameterInfo> parametersList = methodInfo.getParametersList();
-            for (TarsMethodParameterInfo parameterInfo : parametersList) {
-                //out返回值，使用Holder包装
-                if (TarsHelper.isHolder(parameterInfo.getAnnotations())) {
-                    value = request.getMethodParameters()[parameterInfo.getOrder() - 1];
-                    if (value != null) {
-                        try {
-                            ajos.write(TarsHelper.getHolderValue(value), parameterInfo.getOrder());
-                        } catch (Exception e) {
-                            System.err.println("server encodec response holder:" + value + " with ex:" + e);
-                        }
+    /**
+     * 计算返回值和输出参数编码后的字节数, 规则与encodeResult一致
+     */
+    private int sizeOfEncodedResult(TarsServantResponse response, TarsMethodInfo methodInfo, String charsetName) {
+        Charset charset = TarsSize.charset(charsetName);
+        int size = 0;
+        TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
+        if (returnInfo != null && returnInfo.getType() != Void.TYPE && response.getResult() != null) {
+            size = TarsSize.add(size, TarsSize.sizeOf(response.getResult(), returnInfo.getOrder(), charset));
+        }
+        for (TarsMethodParameterInfo parameterInfo : methodInfo.getParametersList()) {
+            if (TarsHelper.isHolder(parameterInfo.getAnnotations())) {
+                Object value = response.getRequest().getMethodParameters()[parameterInfo.getOrder() - 1];
+                if (value != null) {
+                    try {
+                        size = TarsSize.add(size, TarsSize.sizeOf(TarsHelper.getHolderValue(value), parameterInfo.getOrder(), charset));
+                    } catch (Exception e) {
+                        return TarsSize.UNKNOWN;
                     }
                 }
             }
         }
-        return ajos.toByteArray();
+        return size;
+    }
+
+    /**
+     * 大小已知时按精确大小分配缓冲区, 编码过程中不再扩容
+     */
+    private TarsOutputStream newOutputStream(int size, String charsetName) {
+        TarsOutputStream os = size >= 0 ? new TarsOutputStream(size) : new TarsOutputStream();
+        os.setServerEncoding(charsetName);
+        return os;
+    }
+
+    /**
+     * 1.0版本响应包编码后的字节数
+     */
+    private int sizeOfResponse(TarsServantResponse response, int resultSize) {
+        Charset charset = TarsSize.charset(charsetName);
+        int size = 4;
+        size = TarsSize.add(size, TarsSize.sizeOf(response.getVersion(), 1, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(response.getPacketType(), 2, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(response.getRequestId(), 3, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(response.getMessageType(), 4, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(response.getRet(), 5, charset));
+        size = TarsSize.add(size, TarsSize.sizeOfByteArray(resultSize, 6));
+        if (response.getStatus() != null) {
+            size = TarsSize.add(size, TarsSize.sizeOf(response.getStatus(), 7, charset));
+        }
+        if (response.getRet() != TarsHelper.SERVERSUCCESS) {
+            size = TarsSize.add(size, TarsSize.sizeOf(StringUtils.isEmpty(response.getRemark()) ? "" : response.getRemark(), 8, charset));
+        }
+        return size;
+    }
+
+    /**
+     * 返回值(1.0版本sBuffer)的字节数. 返回值>=0时通过writeResult直接写入响应包, 不再调用encodeResult;
+     * 默认返回-1, 使用encodeResult编码
+     * @param response
+     * @param charsetName
+     * @return
+     */
+    protected int sizeOfResult(TarsServantResponse response, String charsetName) {
+        return TarsSize.UNKNOWN;
+    }
+
+    /**
+     * 把返回值作为长度为size的byte[]字段直接写入响应包, 与sizeOfResult配合使用
+     * @param os
+     * @param response
+     * @param charsetName
+     * @param size
+     * @param tag
+     * @throws ProtocolException
+     */
+    protected void writeResult(TarsOutputStream os, TarsServantResponse response, String charsetName, int size, int tag) throws ProtocolException {
+        throw new ProtocolException("writeResult is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 服务端请求对应的方法, 解码时已经解析过的直接使用
+     */
+    private TarsMethodInfo resolveMethodInfo(TarsServantRequest request) {
+        TarsMethodInfo methodInfo = request.getMethodInfo();
+        if (methodInfo == null) {
+            Map<String, TarsMethodInfo> methodInfoMap = AnalystManager.getInstance().getMethodMapByName(request.getServantName());
+            if (methodInfoMap != null) {
+                methodInfo = methodInfoMap.get(request.getFunctionName());
+            }
+        }
+        return methodInfo;
     }
 
     protected byte[] encodeWupResult(TarsServantResponse response, String charsetName) {
-        TarsServantRequest request = response.getRequest();
         UniAttribute unaOut = new UniAttribute();
         unaOut.setEncodeName(charsetName);
         if (response.getVersion() == TarsHelper.VERSION3) {
             unaOut.useVersion3();
         }
+        for (Map.Entry<String, Object> attribute : wupAttributes(response).entrySet()) {
+            unaOut.put(attribute.getKey(), attribute.getValue());
+        }
+        return unaOut.encode();
+    }
 
+    /**
+     * 2.0/3.0版本响应中的返回值和输出参数, 按属性名存放
+     */
+    private Map<String, Object> wupAttributes(TarsServantResponse response) {
+        TarsServantRequest request = response.getRequest();
+        Map<String, Object> attributes = new HashMap<String, Object>();
         int ret = response.getRet();
-        Map<String, TarsMethodInfo> methodInfoMap = AnalystManager.getInstance().getMethodMapByName(request.getServantName());
-        if (ret == TarsHelper.SERVERSUCCESS && methodInfoMap != null) {
-            TarsMethodInfo methodInfo = methodInfoMap.get(request.getFunctionName());
+        TarsMethodInfo methodInfo = ret == TarsHelper.SERVERSUCCESS ? resolveMethodInfo(request) : null;
+        if (methodInfo != null) {
             TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
             if (returnInfo != null && returnInfo.getType() != Void.TYPE && response.getResult() != null) {
-                unaOut.put(TarsHelper.STAMP_STRING, response.getResult());
+                attributes.put(TarsHelper.STAMP_STRING, response.getResult());
             }
 
             Object value = null;
@@ -184,8 +294,12 @@ public class TarsCodec extends Codec {
                     if (value != null) {
                         try {
                             String holderName = TarsHelper.getHolderName(parameterInfo.getAnnotations());
+                            Object holderValue = TarsHelper.getHolderValue(value);
+                            if (holderValue == null || holderValue instanceof Set) {
+                                throw new IllegalArgumentException("unsupported holder value: " + holderValue);
+                            }
                             if (!StringUtils.isEmpty(holderName)) {
-                                unaOut.put(holderName, TarsHelper.getHolderValue(value));
+                                attributes.put(holderName, holderValue);
                             }
                         } catch (Exception e) {
                             System.err.println("server encodec response holder:" + value + " with ex:" + e);
@@ -194,7 +308,7 @@ public class TarsCodec extends Codec {
                 }
             }
         }
-        return unaOut.encode();
+        return attributes;
     }
 
     /**
@@ -207,8 +321,30 @@ public class TarsCodec extends Codec {
     public IoBuffer encodeRequest(Request req, Session session) throws ProtocolException {
         TarsServantRequest request = (TarsServantRequest) req;
         request.setCharsetName(charsetName);
-        TarsOutputStream os = new TarsOutputStream();
-        os.setServerEncoding(charsetName);
+        //输入参数二进制流, 可以直接写入请求包时不再编码为中间byte[]
+        int paramsSize;
+        byte[] params;
+        if (request instanceof TarsServantBatchRequest) {
+            params = encodeBatchRequests((TarsServantBatchRequest) request, session);
+            paramsSize = params.length;
+        } else {
+            paramsSize = sizeOfRequestParams(request, charsetName);
+            params = paramsSize < 0 ? encodeRequestParams(request, charsetName) : null;
+        }
+
+        Charset charset = TarsSize.charset(charsetName);
+        int size = 4;
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getVersion(), 1, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getPacketType(), 2, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getMessageType(), 3, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getTicketNumber(), 4, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getServantName(), 5, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getFunctionName(), 6, charset));
+        size = TarsSize.add(size, TarsSize.sizeOfByteArray(params != null ? params.length : paramsSize, 7));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getTimeout(), 8, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getContext(), 9, charset));
+        size = TarsSize.add(size, TarsSize.sizeOf(request.getStatus(), 10, charset));
+        TarsOutputStream os = newOutputStream(size, charsetName);
 
         os.getByteBuffer().putInt(0);
         os.write(request.getVersion(), 1);
@@ -217,8 +353,11 @@ public class TarsCodec extends Codec {
         os.write(request.getTicketNumber(), 4);
         os.write(request.getServantName(), 5);
         os.write(request.getFunctionName(), 6);
-        //输入参数二进制流
-        os.write(encodeRequestParams(request, charsetName), 7);
+        if (params != null) {
+            os.write(params, 7);
+        } else {
+            writeRequestParams(os, request, charsetName, paramsSize, 7);
+        }
         os.write(request.getTimeout(), 8);
         os.write(request.getContext(), 9);
         os.write(request.getStatus(), 10);
@@ -234,6 +373,34 @@ public class TarsCodec extends Codec {
         return IoBuffer.wrap(os.getByteBuffer());
     }
 
+    /**
+     * 批量请求包的包体: 依次写入各个子请求的完整请求包
+     * @param request
+     * @param session
+     * @return
+     * @throws ProtocolException
+     */
+    private byte[] encodeBatchRequests(TarsServantBatchRequest request, Session session) throws ProtocolException {
+        List<TarsServantRequest> requests = request.getRequests();
+        ByteBuffer[] buffers = new ByteBuffer[requests.size()];
+        int length = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = encodeRequest(requests.get(i), session).buf();
+            length += buffers[i].remaining();
+        }
+        if (length > TarsHelper.PACKAGE_MAX_LENGTH) {
+            throw new ProtocolException("the batch package is too large. data length:" + length);
+        }
+        byte[] data = new byte[length];
+        int offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            int remaining = buffer.remaining();
+            buffer.get(data, offset, remaining);
+            offset += remaining;
+        }
+        return data;
+    }
+
     /**
      * encode 请求参数
      * @param request
@@ -242,12 +409,17 @@ public class TarsCodec extends Codec {
      * @throws ProtocolException
      */
     protected byte[] encodeRequestParams(TarsServantRequest request, String charsetName) throws ProtocolException {
-        TarsOutputStream os = new TarsOutputStream(0);
-        os.setServerEncoding(charsetName);
-
         TarsMethodInfo methodInfo = request.getMethodInfo();
         List<TarsMethodParameterInfo> parameterInfoList = methodInfo.getParametersList();
 
+        int size = sizeOfEncodedParams(request, parameterInfoList, charsetName);
+        TarsOutputStream os = size >= 0 ? new TarsOutputStream(size) : new TarsOutputStream(0);
+        os.setServerEncoding(charsetName);
+        writeParams(os, request, parameterInfoList);
+        return os.detachByteArray();
+    }
+
+    private void writeParams(TarsOutputStream os, TarsServantRequest request, List<TarsMethodParameterInfo> parameterInfoList) throws ProtocolException {
         Object value = null;
         Object[] parameter = request.getMethodParameters();
         for (TarsMethodParameterInfo parameterInfo : parameterInfoList) {
@@ -274,7 +446,62 @@ public class TarsCodec extends Codec {
                 os.write(value, parameterInfo.getOrder());
             }
         }
-        return os.toByteArray();
+    }
+
+    /**
+     * 请求参数(sBuffer)的字节数. 返回值>=0时通过writeRequestParams直接写入请求包, 不再调用encodeRequestParams;
+     * 返回-1时使用encodeRequestParams编码
+     * @param request
+     * @param charsetName
+     * @return
+     */
+    protected int sizeOfRequestParams(TarsServantRequest request, String charsetName) {
+        return sizeOfEncodedParams(request, request.getMethodInfo().getParametersList(), charsetName);
+    }
+
+    /**
+     * 把请求参数作为长度为size的byte[]字段直接写入请求包, 与sizeOfRequestParams配合使用
+     * @param os
+     * @param request
+     * @param charsetName
+     * @param size
+     * @param tag
+     * @throws ProtocolException
+     */
+    protected void writeRequestParams(TarsOutputStream os, TarsServantRequest request, String charsetName, int size, int tag) throws ProtocolException {
+        ByteBuffer slot = os.writeByteArrayHead(size, tag);
+        TarsOutputStream out = new TarsOutputStream(slot);
+        out.setServerEncoding(charsetName);
+        writeParams(out, request, request.getMethodInfo().getParametersList());
+        if (out.getByteBuffer() != slot || slot.position() != size) {
+            throw new ProtocolException("request params size mismatch: " + slot.position() + "/" + size);
+        }
+    }
+
+    /**
+     * 计算请求参数编码后的字节数, 规则与encodeRequestParams一致
+     */
+    private int sizeOfEncodedParams(TarsServantRequest request, List<TarsMethodParameterInfo> parameterInfoList, String charsetName) {
+        Charset charset = TarsSize.charset(charsetName);
+        int size = 0;
+        Object[] parameter = request.getMethodParameters();
+        for (TarsMethodParameterInfo parameterInfo : parameterInfoList) {
+            if (TarsHelper.isContext(parameterInfo.getAnnotations()) || TarsHelper.isCallback(parameterInfo.getAnnotations())) {
+                continue;
+            }
+            Object value = parameter[request.isAsync() ? parameterInfo.getOrder() : parameterInfo.getOrder() - 1];
+            if (TarsHelper.isHolder(parameterInfo.getAnnotations()) && value != null) {
+                try {
+                    value = TarsHelper.getHolderValue(value);
+                } catch (Exception e) {
+                    return TarsSize.UNKNOWN;
+                }
+            }
+            if (value != null) {
+                size = TarsSize.add(size, TarsSize.sizeOf(value, parameterInfo.getOrder(), charset));
+            }
+        }
+        return size;
     }
 
     /**
@@ -307,14 +534,26 @@ public class TarsCodec extends Codec {
             byte packetType = jis.read(TarsHelper.STAMP_BYTE.byteValue(), 2, true);
             int messageType = jis.read(TarsHelper.STAMP_INT.intValue(), 3, true);
             int requestId = jis.read(TarsHelper.STAMP_INT.intValue(), 4, true);
-            String servantName = jis.readString(5, true);
-            String methodName = jis.readString(6, true);
+            //已注册的servant和函数直接按字节匹配, 不创建字符串也不再查两次map
+            String servantName;
+            String methodName;
+            TarsMethodInfo methodInfo = null;
+            AnalystManager.ServantMethods servant = jis.readName(AnalystManager.getInstance().getServantNames(), 5, true);
+            if (servant != null) {
+                servantName = servant.getServantName();
+                methodInfo = jis.readName(servant.getMethods(), 6, true);
+                methodName = methodInfo != null ? methodInfo.getMethodName() : jis.readNameString(6, true);
+            } else {
+                servantName = jis.readNameString(5, true);
+                methodName = jis.readNameString(6, true);
+            }
             request.setVersion(version);
             request.setPacketType(packetType);
             request.setMessageType(messageType);
             request.setRequestId(requestId);
             request.setServantName(servantName);
             request.setFunctionName(methodName);
+            request.setMethodInfo(methodInfo);
             request.setInputStream(jis);
             request.setCharsetName(charsetName);
         } catch (Exception e) {
@@ -324,6 +563,25 @@ public class TarsCodec extends Codec {
         return request;
     }
 
+    /**
+     * 拆分批量请求包中的子请求, 子请求与普通请求包格式相同, 包体需要再调用init解码
+     * @param request
+     * @return
+     * @throws ProtocolException
+     */
+    public List<TarsServantRequest> decodeBatchRequests(TarsServantRequest request) throws ProtocolException {
+        IoBuffer buffer = IoBuffer.wrap(request.getInputStream().readByteBuffer(7, true));
+        List<TarsServantRequest> requests = new ArrayList<TarsServantRequest>();
+        while (buffer.remaining() > 0) {
+            TarsServantRequest subRequest = (TarsServantRequest) decodeRequest(buffer, request.getIoSession());
+            if (subRequest == null) {
+                throw new ProtocolException("incomplete request in batch package, remaining=" + buffer.remaining());
+            }
+            requests.add(subRequest);
+        }
+        return requests;
+    }
+
     /**
      * decode 请求包体
      * @param req
@@ -335,7 +593,8 @@ public class TarsCodec extends Codec {
             //SERVERCODEERR
             return request;
         }
-        if (TarsHelper.isPing(request.getFunctionName())) {
+        if (TarsHelper.isPing(request.getFunctionName()) || TarsHelper.isBatch(request.getFunctionName())) {
+            //批量请求的包体由decodeBatchRequests拆分
             return request;
         }
 
@@ -345,29 +604,32 @@ public class TarsCodec extends Codec {
             oldClassLoader = Thread.currentThread().getContextClassLoader();
             Thread.currentThread().setContextClassLoader(resolveProtocolClassLoader());
             String methodName = request.getFunctionName();
-            byte[] data = jis.read(TarsHelper.STAMP_BYTE_ARRAY, 7, true);//数据
+            ByteBuffer data = jis.readByteBuffer(7, true);//数据, 与请求包共享缓冲区
             int timeout = jis.read(TarsHelper.STAMP_INT.intValue(), 8, true);//超时时间
-            Map<String, String> context = (Map<String, String>) jis.read(TarsHelper.STAMP_MAP, 9, true);//Map<String, String> context
-            Map<String, String> status = (Map<String, String>) jis.read(TarsHelper.STAMP_MAP, 10, true);
+            Map<String, String> context = jis.readStringMap(9, true);
+            Map<String, String> status = jis.readStringMap(10, true);
 
             request.setTimeout(timeout);
             request.setContext(context);
             request.setStatus(status);
 
-            String servantName = request.getServantName();
-            Map<String, TarsMethodInfo> methodInfoMap = AnalystManager.getInstance().getMethodMapByName(servantName);
-
-            if (methodInfoMap == null || methodInfoMap.isEmpty()) {
-                request.setRet(TarsHelper.SERVERNOSERVANTERR);
-                throw new ProtocolException("no found methodInfo, the context[ROOT], serviceName[" + servantName + "], methodName[" + methodName + "]");
-            }
-            TarsMethodInfo methodInfo = methodInfoMap.get(methodName);
+            TarsMethodInfo methodInfo = request.getMethodInfo();
             if (methodInfo == null) {
-                request.setRet(TarsHelper.SERVERNOFUNCERR);
-                throw new ProtocolException("no found methodInfo, the context[ROOT], serviceName[" + servantName + "], methodName[" + methodName + "]");
-            }
+                String servantName = request.getServantName();
+                Map<String, TarsMethodInfo> methodInfoMap = AnalystManager.getInstance().getMethodMapByName(servantName);
 
-            request.setMethodInfo(methodInfo);
+                if (methodInfoMap == null || methodInfoMap.isEmpty()) {
+                    request.setRet(TarsHelper.SERVERNOSERVANTERR);
+                    throw new ProtocolException("no found methodInfo, the context[ROOT], serviceName[" + servantName + "], methodName[" + methodName + "]");
+                }
+                methodInfo = methodInfoMap.get(methodName);
+                if (methodInfo == null) {
+                    request.setRet(TarsHelper.SERVERNOFUNCERR);
+                    throw new ProtocolException("no found methodInfo, the context[ROOT], serviceName[" + servantName + "], methodName[" + methodName + "]");
+                }
+
+                request.setMethodInfo(methodInfo);
+            }
             List<TarsMethodParameterInfo> parametersList = methodInfo.getParametersList();
             if (!CommonUtils.isEmptyCollection(parametersList)) {
                 Object[] parameters = new Object[parametersList.size()];
@@ -380,9 +642,9 @@ public class TarsCodec extends Codec {
                     unaIn.setEncodeName(request.getCharsetName());
 
                     if (request.getVersion() == TarsHelper.VERSION2) {
-                        unaIn.decodeVersion2(data);
+                        unaIn.decodeVersion2(toByteArray(data));
                     } else if (request.getVersion() == TarsHelper.VERSION3) {
-                        unaIn.decodeVersion3(data);
+                        unaIn.decodeVersion3(toByteArray(data));
                     }
 
                     Object value = null;
@@ -418,7 +680,17 @@ public class TarsCodec extends Codec {
         return request;
     }
 
+    private static byte[] toByteArray(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+
     protected Object[] decodeRequestBody(byte[] data, String charset, TarsMethodInfo methodInfo) throws Exception {
+        return decodeRequestBody(ByteBuffer.wrap(data), charset, methodInfo);
+    }
+
+    protected Object[] decodeRequestBody(ByteBuffer data, String charset, TarsMethodInfo methodInfo) throws Exception {
         TarsInputStream jis = new TarsInputStream(data);
         List<TarsMethodParameterInfo> parametersList = methodInfo.getParametersList();
         Object[] parameters = new Object[parametersList.size()];
@@ -474,6 +746,7 @@ public class TarsCodec extends Codec {
         response.setRet(is.read((int) 0, 5, true));
         if (response.getRet() == TarsHelper.SERVERSUCCESS) {
             response.setInputStream(is);
+            response.setStatusStream(is);
         }
 
         return response;
@@ -494,42 +767,52 @@ public class TarsCodec extends Codec {
         }
         TarsInputStream is = response.getInputStream();
 
-        //读取二进制流
-        byte[] data = is.read(new byte[]{}, 6, true);
-        TarsInputStream jis = new TarsInputStream(data);
-        jis.setServerEncoding(response.getCharsetName());
-
         TarsMethodInfo methodInfo = request.getMethodInfo();
         TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
+        boolean hasReturn = returnInfo != null && Void.TYPE != returnInfo.getType();
 
-        Object[] results;
-        try {
-            results = decodeResponseBody(data, response.getCharsetName(), methodInfo);
-        } catch (Exception e) {
-            throw new ProtocolException(e);
-        }
-
-        int i = 0;
-        if (returnInfo != null && Void.TYPE != returnInfo.getType()) {
-            response.setResult(results[i++]);
-        }
+        //没有返回值和输出参数时不需要解码包体
+        if (hasReturn || hasHolder(methodInfo)) {
+            //直接在响应包的缓冲区上解码, 不再复制sBuffer
+            ByteBuffer data = is.readByteBuffer(6, true);
 
-        List<TarsMethodParameterInfo> list = methodInfo.getParametersList();
-        for (TarsMethodParameterInfo info : list) {
-            if (!TarsHelper.isHolder(info.getAnnotations())) {
-                continue;
-            }
+            Object[] results;
             try {
-                //设置输出Holder值
-                TarsHelper.setHolderValue(request.getMethodParameters()[info.getOrder() - 1], results[i++]);
+                results = decodeResponseBody(data, response.getCharsetName(), methodInfo);
             } catch (Exception e) {
                 throw new ProtocolException(e);
             }
+
+            int i = 0;
+            if (hasReturn) {
+                response.setResult(results[i++]);
+            }
+
+            List<TarsMethodParameterInfo> list = methodInfo.getParametersList();
+            for (TarsMethodParameterInfo info : list) {
+                if (!TarsHelper.isHolder(info.getAnnotations())) {
+                    continue;
+                }
+                try {
+                    //设置输出Holder值
+                    TarsHelper.setHolderValue(request.getMethodParameters()[info.getOrder() - 1], results[i++]);
+                } catch (Exception e) {
+                    throw new ProtocolException(e);
+                }
+            }
         }
-        response.setStatus((HashMap<String, String>) is.read(TarsHelper.STAMP_MAP, 7, false));
     }
 
-    protected Object[] decodeResponseBody(byte[] data, String charset, TarsMethodInfo methodInfo) throws Exception {
+    private boolean hasHolder(TarsMethodInfo methodInfo) {
+        for (TarsMethodParameterInfo info : methodInfo.getParametersList()) {
+            if (TarsHelper.isHolder(info.getAnnotations())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected Object[] decodeResponseBody(ByteBuffer data, String charset, TarsMethodInfo methodInfo) throws Exception {
         TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
         List<Object> values = new ArrayList<Object>();
 
@@ -554,6 +837,10 @@ public class TarsCodec extends Codec {
         return values.toArray();
     }
 
+    protected Object[] decodeResponseBody(byte[] data, String charset, TarsMethodInfo methodInfo) throws Exception {
+        return decodeResponseBody(ByteBuffer.wrap(data), charset, methodInfo);
+    }
+
     /**
      * 解析callback参数
      * @param response
@@ -561,8 +848,8 @@ public class TarsCodec extends Codec {
      * @throws ProtocolException
      */
     public Object[] decodeCallbackArgs(TarsServantResponse response) throws ProtocolException {
-        //读取输出二进制流
-        byte[] data = response.getInputStream().read(new byte[]{}, 6, true);
+        //读取输出二进制流, 与响应包共享缓冲区
+        ByteBuffer data = response.getInputStream().readByteBuffer(6, true);
 
         TarsServantRequest request = response.getRequest();
 
@@ -583,6 +870,10 @@ public class TarsCodec extends Codec {
     }
 
     protected Object[] decodeCallbackArgs(byte[] data, String charset, TarsMethodInfo methodInfo) throws ProtocolException, NoSuchMethodException, Exception {
+        return decodeCallbackArgs(ByteBuffer.wrap(data), charset, methodInfo);
+    }
+
+    protected Object[] decodeCallbackArgs(ByteBuffer data, String charset, TarsMethodInfo methodInfo) throws ProtocolException, NoSuchMethodException, Exception {
         TarsInputStream jis = new TarsInputStream(data);
         jis.setServerEncoding(charset);
 
@@ -0,0 +1,47 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.rpc.protocol.tars;
+
+import com.qq.tars.net.core.Session;
+import com.qq.tars.protocol.util.TarsHelper;
+
+import java.util.List;
+
+/**
+ * 批量请求包, 包体依次是各个子请求编码后的普通请求包.
+ * 批量请求包本身是单向请求, 服务端对每个子请求分别返回普通响应包
+ */
+public class TarsServantBatchRequest extends TarsServantRequest {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<TarsServantRequest> requests;
+
+    public TarsServantBatchRequest(Session session, String servantName, List<TarsServantRequest> requests) {
+        super(session);
+        this.requests = requests;
+        setVersion(TarsHelper.VERSION);
+        setPacketType(TarsHelper.ONEWAY);
+        setMessageType(TarsHelper.MESSAGETYPENULL);
+        setServantName(servantName);
+        setFunctionName(TarsHelper.BATCH);
+    }
+
+    public List<TarsServantRequest> getRequests() {
+        return requests;
+    }
+}
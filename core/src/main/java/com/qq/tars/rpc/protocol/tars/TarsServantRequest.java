@@ -22,6 +22,9 @@ import com.qq.tars.protocol.tars.support.TarsMethodInfo;
 import com.qq.tars.protocol.util.TarsHelper;
 import com.qq.tars.rpc.protocol.ServantRequest;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -50,6 +53,9 @@ public class TarsServantRequest extends ServantRequest implements java.io.Serial
 
     private int ret;
 
+    //是否在status中询问了服务端是否支持批量请求
+    private transient boolean batchProbe;
+
     public TarsServantRequest(Session session) {
         super(session);
     }
@@ -190,4 +196,35 @@ public class TarsServantRequest extends ServantRequest implements java.io.Serial
     public void setApi(Class<?> api) {
         this.api = api;
     }
+
+    @Override
+    public boolean isBatchable() {
+        return version == TarsHelper.VERSION && !TarsHelper.isPing(functionName) && !TarsHelper.isBatch(functionName);
+    }
+
+    @Override
+    public boolean probeBatchSupport() {
+        if (!isBatchable() || packetType == TarsHelper.ONEWAY) {
+            return false;
+        }
+        //复制一份, status可能与其他请求共用
+        Map<String, String> probeStatus = status == null ? new HashMap<String, String>() : new HashMap<String, String>(status);
+        probeStatus.put(TarsHelper.STATUS_BATCH, "");
+        this.status = probeStatus;
+        this.batchProbe = true;
+        return true;
+    }
+
+    public boolean isBatchProbe() {
+        return batchProbe;
+    }
+
+    @Override
+    public ServantRequest newBatchRequest(List<ServantRequest> requests) {
+        List<TarsServantRequest> batch = new ArrayList<TarsServantRequest>(requests.size());
+        for (ServantRequest request : requests) {
+            batch.add((TarsServantRequest) request);
+        }
+        return new TarsServantBatchRequest(getIoSession(), servantName, batch);
+    }
 }
@@ -16,13 +16,16 @@
 
 package com.qq.tars.rpc.protocol.tars;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
+import com.qq.tars.client.util.ClientLogger;
 import com.qq.tars.net.client.ticket.Ticket;
 import com.qq.tars.net.client.ticket.TicketManager;
 import com.qq.tars.net.core.Session;
 import com.qq.tars.net.protocol.ProtocolException;
 import com.qq.tars.protocol.tars.TarsInputStream;
+import com.qq.tars.protocol.util.TarsHelper;
 import com.qq.tars.rpc.protocol.Codec;
 import com.qq.tars.rpc.protocol.ServantResponse;
 
@@ -48,9 +51,14 @@ public class TarsServantResponse extends ServantResponse implements java.io.Seri
 
     private String charsetName;
     private TarsInputStream inputStream;
+    //status在首次访问时才从响应包中解码, 使用独立的缓冲区视图, 不影响包体的解码位置. 由this保护
+    private transient ByteBuffer statusBuffer;
     private TarsServantRequest request;
     private Throwable cause = null;
 
+    //询问请求的响应中服务端是否声明支持批量请求
+    private transient Boolean batchSupport;
+
     public TarsServantResponse(Session session) {
         super(session);
     }
@@ -68,6 +76,9 @@ public class TarsServantResponse extends ServantResponse implements java.io.Seri
             return;
         }
         this.setRequest((TarsServantRequest) ticket.request());
+        if (request.isBatchProbe()) {
+            this.batchSupport = decodeBatchSupport();
+        }
         try {
             ((TarsCodec) this.session.getProtocolFactory().getDecoder()).decodeResponseBody(this);
 //            TarsCodecHelper.decodeResponseBody(this);
@@ -76,6 +87,26 @@ public class TarsServantResponse extends ServantResponse implements java.io.Seri
         }
     }
 
+    /**
+     * 从响应包的status中读取服务端是否支持批量请求, 不影响包体的解码位置
+     */
+    @SuppressWarnings("unchecked")
+    private Boolean decodeBatchSupport() {
+        try {
+            TarsInputStream is = new TarsInputStream(inputStream.getBs().duplicate());
+            is.setServerEncoding(charsetName);
+            Map<String, String> status = is.readStringMap(7, false);
+            return status != null && TarsHelper.BATCH_SUPPORTED.equals(status.get(TarsHelper.STATUS_BATCH));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Boolean getBatchSupport() {
+        return batchSupport;
+    }
+
     public short getVersion() {
         return version;
     }
@@ -117,12 +148,33 @@ public class TarsServantResponse extends ServantResponse implements java.io.Seri
         this.ret = ret;
     }
 
-    public Map<String, String> getStatus() {
+    @SuppressWarnings("unchecked")
+    public synchronized Map<String, String> getStatus() {
+        ByteBuffer buffer = statusBuffer;
+        if (buffer != null) {
+            statusBuffer = null;
+            try {
+                TarsInputStream is = new TarsInputStream(buffer);
+                is.setServerEncoding(charsetName);
+                status = is.readStringMap(7, false);
+            } catch (RuntimeException e) {
+                ClientLogger.getLogger().error("decode response status failed|" + getRequestId(), e);
+            }
+        }
         return status;
     }
 
-    public void setStatus(Map<String, String> status) {
+    public synchronized void setStatus(Map<String, String> status) {
         this.status = status;
+        this.statusBuffer = null;
+    }
+
+    /**
+     * 设置延迟解码status的输入流, 流的位置需要在status字段之前. 只记录流当前位置的缓冲区视图, 之后继续读取该流不影响status的解码
+     * @param statusStream
+     */
+    public synchronized void setStatusStream(TarsInputStream statusStream) {
+        this.statusBuffer = statusStream.getBs().duplicate();
     }
 
     public Object getResult() {
@@ -16,6 +16,7 @@
 
 package com.qq.tars.rpc.protocol.tars.support;
 
+import com.qq.tars.protocol.tars.TarsNameTable;
 import com.qq.tars.protocol.tars.support.TarsMethodInfo;
 import com.qq.tars.protocol.util.TarsHelper;
 
@@ -33,6 +34,8 @@ public final class AnalystManager {
     private final static AnalystManager instance = new AnalystManager();
     private ConcurrentHashMap<String, Map<Method, TarsMethodInfo>> cache = new ConcurrentHashMap<String, Map<Method, TarsMethodInfo>>();
     private ConcurrentHashMap<String, Map<String, TarsMethodInfo>> context_cache = new ConcurrentHashMap<String, Map<String, TarsMethodInfo>>();
+    //与context_cache内容一致, 解码请求时按servant名和函数名的字节直接匹配
+    private final TarsNameTable<ServantMethods> servantNames = new TarsNameTable<ServantMethods>();
 
     public static AnalystManager getInstance() {
         return instance;
@@ -50,6 +53,10 @@ public final class AnalystManager {
         return context_cache.get(objName);
     }
 
+    public TarsNameTable<ServantMethods> getServantNames() {
+        return servantNames;
+    }
+
     public void registry(String contextName, Class<?> api, String objName) {
         Map<Method, TarsMethodInfo> methodsMap = TarsHelper.getMethodInfo(api, objName);
         if (methodsMap != null && !methodsMap.isEmpty()) {
@@ -57,7 +64,35 @@ public final class AnalystManager {
             for (Entry<Method, TarsMethodInfo> entry : methodsMap.entrySet()) {
                 methodMap.put(entry.getKey().getName(), entry.getValue());
             }
-            context_cache.putIfAbsent(objName, methodMap);
+            if (context_cache.putIfAbsent(objName, methodMap) == null) {
+                TarsNameTable<TarsMethodInfo> methodNames = new TarsNameTable<TarsMethodInfo>();
+                for (TarsMethodInfo methodInfo : methodMap.values()) {
+                    methodNames.putIfAbsent(methodInfo.getMethodName(), methodInfo);
+                }
+                servantNames.putIfAbsent(objName, new ServantMethods(objName, methodNames));
+            }
+        }
+    }
+
+    /**
+     * servant名及其函数名表
+     */
+    public static final class ServantMethods {
+
+        private final String servantName;
+        private final TarsNameTable<TarsMethodInfo> methods;
+
+        ServantMethods(String servantName, TarsNameTable<TarsMethodInfo> methods) {
+            this.servantName = servantName;
+            this.methods = methods;
+        }
+
+        public String getServantName() {
+            return servantName;
+        }
+
+        public TarsNameTable<TarsMethodInfo> getMethods() {
+            return methods;
         }
     }
 }
@@ -28,8 +28,8 @@ import java.util.Set;
 
 import com.qq.tars.protocol.tars.TarsInputStream;
 import com.qq.tars.protocol.tars.TarsOutputStream;
+import com.qq.tars.protocol.tars.TarsSize;
 import com.qq.tars.protocol.tars.TarsStructBase;
-import com.qq.tars.protocol.util.TarsUtil;
 
 class OldUniAttribute {
 
@@ -82,10 +82,7 @@ class OldUniAttribute {
         if (t instanceof Set) {
             throw new IllegalArgumentException("can not support Set");
         }
-        TarsOutputStream _out = new TarsOutputStream();
-        _out.setServerEncoding(encodeName);
-        _out.write(t, 0);
-        byte[] _sBuffer = TarsUtil.getBufArray(_out.getByteBuffer());
+        byte[] _sBuffer = encodeObject(t);
         HashMap<String, byte[]> pair = new HashMap<String, byte[]>(1);
         ArrayList<String> listTpye = new ArrayList<String>(1);
         checkObjectType(listTpye, t);
@@ -151,17 +148,31 @@ class OldUniAttribute {
         }
     }
 
+    /**
+     * 类型模板按类型名在实例内缓存, 类型名由当前ClassLoader解析, 不在实例间共享
+     */
     private Object getCacheProxy(String className) {
-        Object proxy = null;
-        if (cachedClassName.containsKey(className)) {
-            proxy = cachedClassName.get(className);
-        } else {
+        Object proxy = cachedClassName.get(className);
+        if (proxy == null) {
             proxy = BasicClassTypeUtil.createClassByUni(className);
             cachedClassName.put(className, proxy);
         }
         return proxy;
     }
 
+    /**
+     * 按预先计算的大小一次性分配缓冲区编码, 结果不再复制
+     * @param o
+     * @return
+     */
+    byte[] encodeObject(Object o) {
+        int size = TarsSize.sizeOf(o, 0, TarsSize.charset(encodeName));
+        TarsOutputStream _out = size >= 0 ? new TarsOutputStream(size) : new TarsOutputStream();
+        _out.setServerEncoding(encodeName);
+        _out.write(o, 0);
+        return _out.detachByteArray();
+    }
+
     private void saveDataCache(String name, Object o) {
         cachedData.put(name, o);
     }
@@ -209,7 +220,7 @@ class OldUniAttribute {
                 break;
             }
             try {
-                T proxy = (T) BasicClassTypeUtil.createClassByUni(className);
+                T proxy = (T) getCacheProxy(className);
                 _is.warp(data);
                 _is.setServerEncoding(encodeName);
                 return (T) _is.read(proxy, 0, true);
@@ -261,10 +272,7 @@ class OldUniAttribute {
     }
 
     public byte[] encode() {
-        TarsOutputStream _os = new TarsOutputStream(0);
-        _os.setServerEncoding(encodeName);
-        _os.write(_data, 0);
-        return TarsUtil.getBufArray(_os.getByteBuffer());
+        return encodeObject(_data);
     }
 
     public void decode(byte[] buffer) {
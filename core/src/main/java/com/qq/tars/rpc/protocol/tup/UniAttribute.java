@@ -16,14 +16,19 @@
 
 package com.qq.tars.rpc.protocol.tup;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import com.qq.tars.protocol.tars.TarsInputStream;
 import com.qq.tars.protocol.tars.TarsOutputStream;
-import com.qq.tars.protocol.util.TarsUtil;
+import com.qq.tars.protocol.tars.TarsSize;
+import com.qq.tars.protocol.tars.TarsStructBase;
+import com.qq.tars.protocol.tars.exc.TarsEncodeException;
 
 public class UniAttribute extends OldUniAttribute {
 
@@ -80,11 +85,7 @@ public class UniAttribute extends OldUniAttribute {
             if (t instanceof Set) {
                 throw new IllegalArgumentException("can not support Set");
             }
-            TarsOutputStream _out = new TarsOutputStream();
-            _out.setServerEncoding(encodeName);
-            _out.write(t, 0);
-            byte[] _sBuffer = TarsUtil.getBufArray(_out.getByteBuffer());
-            _newData.put(name, _sBuffer);
+            _newData.put(name, encodeObject(t));
         } else {
             super.put(name, t);
         }
@@ -275,12 +276,69 @@ public class UniAttribute extends OldUniAttribute {
         }
     }
 
+    /**
+     * 把属性直接作为byte[]字段写入os的tag位置, 结果与逐个put后encode再写入相同, 属性不再先编码为中间byte[]再复制.
+     * 有属性的大小无法预先计算时返回false, 此时不写入任何内容
+     * @param os
+     * @param attributes
+     * @param charsetName
+     * @param tag
+     * @return
+     */
+    public static boolean write(TarsOutputStream os, Map<String, ?> attributes, String charsetName, int tag) {
+        Charset charset = TarsSize.charset(charsetName);
+        int[] sizes = new int[attributes.size()];
+        int size = TarsSize.add(TarsSize.sizeOfHead(0), TarsSize.sizeOf(attributes.size(), 0, charset));
+        int i = 0;
+        for (Entry<String, ?> e : attributes.entrySet()) {
+            if (e.getKey() == null) {
+                throw new IllegalArgumentException("put key can not is null");
+            }
+            if (e.getValue() == null) {
+                throw new IllegalArgumentException("put value can not is null");
+            }
+            if (e.getValue() instanceof Set) {
+                throw new IllegalArgumentException("can not support Set");
+            }
+            sizes[i] = TarsSize.sizeOf(e.getValue(), 0, charset);
+            if (sizes[i] < 0) {
+                return false;
+            }
+            size = TarsSize.add(size, TarsSize.sizeOf(e.getKey(), 0, charset));
+            size = TarsSize.add(size, TarsSize.sizeOfByteArray(sizes[i], 1));
+            i++;
+        }
+        if (size < 0) {
+            return false;
+        }
+
+        ByteBuffer slot = os.writeByteArrayHead(size, tag);
+        TarsOutputStream out = new TarsOutputStream(slot);
+        out.setServerEncoding(charsetName);
+        out.writeHead(TarsStructBase.MAP, 0);
+        out.write(attributes.size(), 0);
+        i = 0;
+        for (Entry<String, ?> e : attributes.entrySet()) {
+            out.write(e.getKey(), 0);
+            out.writeHead(TarsStructBase.SIMPLE_LIST, 1);
+            out.writeHead(TarsStructBase.BYTE, 0);
+            out.write(sizes[i], 0);
+            int start = slot.position();
+            out.write(e.getValue(), 0);
+            if (out.getByteBuffer() != slot || slot.position() - start != sizes[i]) {
+                throw new TarsEncodeException("attribute size mismatch: " + e.getKey());
+            }
+            i++;
+        }
+        if (slot.position() != size) {
+            throw new TarsEncodeException("attributes size mismatch: " + slot.position() + "/" + size);
+        }
+        return true;
+    }
+
     public byte[] encode() {
         if (null != _newData) {
-            TarsOutputStream _os = new TarsOutputStream(0);
-            _os.setServerEncoding(encodeName);
-            _os.write(_newData, 0);
-            return TarsUtil.getBufArray(_os.getByteBuffer());
+            return encodeObject(_newData);
         }
         return super.encode();
     }
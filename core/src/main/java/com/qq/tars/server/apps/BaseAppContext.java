@@ -32,6 +32,7 @@ import com.qq.tars.support.trace.TraceClientFilter;
 import com.qq.tars.support.trace.TraceServerFilter;
 
 import java.util.*;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -49,7 +50,8 @@ public abstract class BaseAppContext implements AppContext {
 
     Set<AppContextListener> listeners = new HashSet<AppContextListener>(4);
     
-    Map<FilterKind, List<Filter>> filters = new HashMap<FilterKind, List<Filter>>();
+    //过滤器快照, 只在注册或删除过滤器时重建
+    final ConcurrentHashMap<FilterKind, List<Filter>> filters = new ConcurrentHashMap<FilterKind, List<Filter>>();
 
 
     BaseAppContext() {
@@ -82,9 +84,37 @@ public abstract class BaseAppContext implements AppContext {
 
     @Override
     public void stop() {
+        ServerConfig serverConfig = ConfigurationManager.getInstance().getServerConfig();
+        long timeout = serverConfig == null ? 0 : serverConfig.getDrainTimeout();
+        //排空和线程池关闭共用同一个截止时间
+        long deadline = System.currentTimeMillis() + timeout;
+        drainUntil(deadline);
         for (Adapter servantAdapter : servantAdapterMap.values()) {
             servantAdapter.stop();
         }
+        ServantThreadPoolManager.shutdown(deadline);
+    }
+
+    @Override
+    public boolean drain(long timeout) {
+        return drainUntil(System.currentTimeMillis() + timeout);
+    }
+
+    private synchronized boolean drainUntil(long deadline) {
+        //先停止所有servant接收新连接, 再统一等待
+        for (Entry<String, Adapter> entry : servantAdapterMap.entrySet()) {
+            if (!OmConstants.AdminServant.equals(entry.getKey())) {
+                entry.getValue().beginDrain(deadline);
+            }
+        }
+        boolean drained = true;
+        for (Entry<String, Adapter> entry : servantAdapterMap.entrySet()) {
+            if (!OmConstants.AdminServant.equals(entry.getKey())) {
+                drained &= entry.getValue().awaitDrained(deadline);
+            }
+        }
+        System.out.println("[SERVER] servants drained" + (drained ? "." : " with timeout."));
+        return drained;
     }
 
     /**
@@ -136,24 +166,45 @@ public abstract class BaseAppContext implements AppContext {
 
     // TODO: 2019-08-03
     void loadDefaultFilter() {
-    	filters.put(FilterKind.SERVER, new LinkedList<Filter>());
-    	filters.put(FilterKind.CLIENT, new LinkedList<Filter>());
-    	filters.put(FilterKind.CALLBACK, new LinkedList<Filter>());
-    	
-    	List<Filter> serverFilters = filters.get(FilterKind.SERVER);
-    	Filter traceServerFilter = new TraceServerFilter();
-    	traceServerFilter.init();
-    	serverFilters.add(traceServerFilter);
-    	
-    	List<Filter> clientFilters = filters.get(FilterKind.CLIENT);
-    	Filter traceClientFilter = new TraceClientFilter();
-    	traceClientFilter.init();
-    	clientFilters.add(traceClientFilter);
-    	
-    	List<Filter> callbackFilters = filters.get(FilterKind.CALLBACK);
-    	Filter traceCallbackFilter = new TraceCallbackFilter();
-    	traceCallbackFilter.init();
-    	callbackFilters.add(traceCallbackFilter);   	
+    	//未开启采样时trace过滤器不做任何处理, 不注册以便请求走无过滤器的快速路径
+    	ServerConfig serverConfig = ConfigurationManager.getInstance().getServerConfig();
+    	if (serverConfig == null || serverConfig.getSampleRate() <= 0) {
+    		return;
+    	}
+    	addFilter(FilterKind.SERVER, new TraceServerFilter());
+    	addFilter(FilterKind.CLIENT, new TraceClientFilter());
+    	addFilter(FilterKind.CALLBACK, new TraceCallbackFilter());
+    }
+
+    /**
+     * 注册过滤器并重建对应类型的过滤器快照
+     * @param kind
+     * @param filter
+     */
+    @Override
+    public synchronized void addFilter(FilterKind kind, Filter filter) {
+        filter.init();
+        List<Filter> current = filters.get(kind);
+        List<Filter> rebuild = current == null ? new ArrayList<Filter>(1) : new ArrayList<Filter>(current);
+        rebuild.add(filter);
+        filters.put(kind, Collections.unmodifiableList(rebuild));
+    }
+
+    /**
+     * 删除过滤器并重建对应类型的过滤器快照
+     * @param kind
+     * @param filter
+     */
+    @Override
+    public synchronized void removeFilter(FilterKind kind, Filter filter) {
+        List<Filter> current = filters.get(kind);
+        if (current == null || !current.contains(filter)) {
+            return;
+        }
+        List<Filter> rebuild = new ArrayList<Filter>(current);
+        rebuild.remove(filter);
+        filters.put(kind, Collections.unmodifiableList(rebuild));
+        filter.destroy();
     }
 
     void appContextStarted() {
@@ -189,6 +240,7 @@ public abstract class BaseAppContext implements AppContext {
         if (!ready) {
             throw new RuntimeException("The application isn't started.");
         }
-    	return filters.get(kind);
+        List<Filter> list = filters.get(kind);
+        return list == null ? Collections.<Filter>emptyList() : list;
     }
 }
@@ -33,6 +33,8 @@ public class ServantAdapterConfig {
     private String protocol = "tars";
     private int threads = 1;
     private String handleGroup = null;
+    //使用虚拟线程处理请求, 需要JDK 21及以上
+    private boolean virtualThreads = false;
 
     public ServantAdapterConfig load(Config conf, String adapterName) {
         String path = "/tars/application/server/" + adapterName;
@@ -44,6 +46,7 @@ public class ServantAdapterConfig {
         queueTimeout = conf.getInt(path + "<queuetimeout>", 10000);
         servant = conf.get(path + "<servant>");
         threads = conf.getInt(path + "<threads>", 1);
+        virtualThreads = conf.getBool(path + "<virtualthreads>", false);
         return this;
     }
 
@@ -118,4 +121,13 @@ public class ServantAdapterConfig {
         this.handleGroup = handleGroup;
         return this;
     }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public ServantAdapterConfig setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
 }
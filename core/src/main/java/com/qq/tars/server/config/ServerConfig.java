@@ -52,6 +52,7 @@ public class ServerConfig {
     private int sessionCheckInterval = 60000;
     private boolean tcpNoDelay = false;
     private int udpBufferSize = 4096;
+    private int drainTimeout = 5000;
 
     private String charsetName = "UTF-8";
 
@@ -94,6 +95,7 @@ public class ServerConfig {
         udpBufferSize = conf.getInt("/tars/application/server<udpbuffersize>",
                 4096);
         tcpNoDelay = conf.getBool("/tars/application/server<tcpnodelay>", false);
+        drainTimeout = conf.getInt("/tars/application/server<draintimeout>", 5000);
 
         servantAdapterConfMap = new LinkedHashMap<String, ServantAdapterConfig>();
         List<String> adapterNameList = conf.getSubTags("/tars/application/server");
@@ -263,6 +265,15 @@ public class ServerConfig {
         return this;
     }
 
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public ServerConfig setDrainTimeout(int drainTimeout) {
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
     public int getSessionTimeOut() {
         return sessionTimeOut;
     }
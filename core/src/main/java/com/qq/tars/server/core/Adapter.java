@@ -19,4 +19,17 @@ package com.qq.tars.server.core;
 public interface Adapter {
     public void bind(AppService appService) throws Exception;
     public void stop();
+
+    /**
+     * 停止接收新连接, 进入排空模式
+     * @param deadline 截止时间(毫秒时间戳)
+     */
+    public void beginDrain(long deadline);
+
+    /**
+     * 等待在途请求和待写数据处理完成后关闭连接
+     * @param deadline 截止时间(毫秒时间戳)
+     * @return 截止时间前排空返回true
+     */
+    public boolean awaitDrained(long deadline);
 }
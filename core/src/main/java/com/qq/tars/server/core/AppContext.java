@@ -30,10 +30,21 @@ public interface AppContext {
 
     public void stop();
 
+    /**
+     * 排空业务servant: 停止接收新连接, 在超时时间内处理完在途请求后关闭连接, 管理servant不受影响
+     * @param timeout 超时时间(毫秒)
+     * @return 超时前排空返回true
+     */
+    public boolean drain(long timeout);
+
     public ServantHomeSkeleton getCapHomeSkeleton(String homeName);
     
     public List<Filter> getFilters(FilterKind kind);
 
+    public void addFilter(FilterKind kind, Filter filter);
+
+    public void removeFilter(FilterKind kind, Filter filter);
+
     public void init();
 }
 
@@ -15,6 +15,12 @@
  */
 package com.qq.tars.server.core;
 
+import java.util.Collections;
+import java.util.List;
+
+import com.qq.tars.common.Filter;
+import com.qq.tars.common.FilterKind;
+
 public class AppContextManager {
     private AppContext appContext;
 
@@ -31,4 +37,15 @@ public class AppContextManager {
     public AppContext getAppContext() {
         return appContext;
     }
+
+    /**
+     * 获取当前应用的过滤器快照，未初始化应用上下文时返回空列表
+     * @param kind
+     * @return
+     */
+    public List<Filter> getFilters(FilterKind kind) {
+        AppContext context = appContext;
+        List<Filter> filters = context == null ? null : context.getFilters(kind);
+        return filters == null ? Collections.<Filter>emptyList() : filters;
+    }
 }
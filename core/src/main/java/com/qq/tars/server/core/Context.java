@@ -21,6 +21,8 @@ import java.util.Map;
 
 import com.qq.tars.net.core.Request;
 import com.qq.tars.net.core.Response;
+import com.qq.tars.net.core.Session;
+import com.qq.tars.rpc.protocol.ServantRequest;
 
 public final class Context<REQ extends Request, RESP extends Response> {
 
@@ -28,8 +30,6 @@ public final class Context<REQ extends Request, RESP extends Response> {
 
     private RESP response = null;
 
-    private Map<String, Object> attributes = new HashMap<String, Object>();
-
     public static final String INTERNAL_START_TIME = "internal.startTime";
 
     public static final String INTERNAL_CLIENT_IP = "internal.requestIp";
@@ -42,6 +42,20 @@ public final class Context<REQ extends Request, RESP extends Response> {
 
     public static final String INTERNAL_SESSION_DATA = "internal.sessionData";
 
+    private static final String[] INTERNAL_NAMES = {INTERNAL_START_TIME, INTERNAL_CLIENT_IP, INTERNAL_APP_NAME,
+            INTERNAL_SERVICE_NAME, INTERNAL_METHOD_NAME, INTERNAL_SESSION_DATA};
+
+    private static final int SLOT_CLIENT_IP = 1;
+    private static final int SLOT_SERVICE_NAME = 3;
+    private static final int SLOT_METHOD_NAME = 4;
+    private static final int SLOT_SESSION_DATA = 5;
+
+    //内置属性使用固定slot保存, 客户端ip、服务名、方法名和session未设置时在读取时从request中获取
+    private final Object[] internalAttributes = new Object[INTERNAL_NAMES.length];
+
+    //业务自定义属性, 第一次设置时创建
+    private Map<String, Object> attributes = null;
+
     public Context(REQ req, RESP resp) {
         this.request = req;
         this.response = resp;
@@ -63,12 +77,57 @@ public final class Context<REQ extends Request, RESP extends Response> {
     @SuppressWarnings("unchecked")
     public <T> T getAttribute(String name, T defaultValue) {
         Object value = null;
-        value = attributes.get(name);
+        int slot = internalSlot(name);
+        if (slot >= 0) {
+            value = internalAttributes[slot];
+            if (value == null) {
+                value = resolveInternalAttribute(slot);
+                internalAttributes[slot] = value;
+            }
+        } else if (attributes != null) {
+            value = attributes.get(name);
+        }
         if (value == null) return defaultValue;
         return (T) value;
     }
 
     public <T> void setAttribute(String name, T value) {
+        int slot = internalSlot(name);
+        if (slot >= 0) {
+            internalAttributes[slot] = value;
+            return;
+        }
+        if (attributes == null) {
+            attributes = new HashMap<String, Object>(4);
+        }
         this.attributes.put(name, value);
     }
+
+    private static int internalSlot(String name) {
+        for (int i = 0; i < INTERNAL_NAMES.length; i++) {
+            if (INTERNAL_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object resolveInternalAttribute(int slot) {
+        if (request == null) {
+            return null;
+        }
+        switch (slot) {
+            case SLOT_CLIENT_IP:
+                Session session = request.getIoSession();
+                return session == null ? null : session.getRemoteIp();
+            case SLOT_SERVICE_NAME:
+                return request instanceof ServantRequest ? ((ServantRequest) request).getServantName() : null;
+            case SLOT_METHOD_NAME:
+                return request instanceof ServantRequest ? ((ServantRequest) request).getFunctionName() : null;
+            case SLOT_SESSION_DATA:
+                return request.getIoSession();
+            default:
+                return null;
+        }
+    }
 }
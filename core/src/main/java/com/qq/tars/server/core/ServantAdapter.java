@@ -21,6 +21,7 @@ import java.lang.reflect.Constructor;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.Executor;
@@ -49,6 +50,9 @@ public class ServantAdapter implements Adapter {
 
     private ServantHomeSkeleton skeleton;
 
+    //监听的ServerSocketChannel或DatagramChannel, 排空时关闭
+    private SelectableChannel serverChannel;
+
     public ServantAdapter(ServantAdapterConfig servantAdapterConfig) {
         this.servantAdapterConfig = servantAdapterConfig;
     }
@@ -80,6 +84,7 @@ public class ServantAdapter implements Adapter {
 
             //注册到线程池中的第一个线程中
             selectorManager.getReactor(0).registerChannel(serverChannel, SelectionKey.OP_ACCEPT);
+            this.serverChannel = serverChannel;
 
             System.out.println("[SERVER] server started at " + endpoint + "...");
 
@@ -97,6 +102,7 @@ public class ServantAdapter implements Adapter {
 
             //注册到线程池中的第一个线程中
             this.selectorManager.getReactor(0).registerChannel(serverChannel, SelectionKey.OP_READ);
+            this.serverChannel = serverChannel;
             System.out.println("[SERVER] servant started at " + endpoint + "...");
         }
     }
@@ -130,6 +136,7 @@ public class ServantAdapter implements Adapter {
             serverChannel.configureBlocking(false);
 
             selectorManager.getReactor(0).registerChannel(serverChannel, SelectionKey.OP_ACCEPT);
+            this.serverChannel = serverChannel;
 
             System.out.println("[SERVER] server started at " + endpoint + "...");
 
@@ -145,6 +152,7 @@ public class ServantAdapter implements Adapter {
             serverChannel.configureBlocking(false);
 
             this.selectorManager.getReactor(0).registerChannel(serverChannel, SelectionKey.OP_READ);
+            this.serverChannel = serverChannel;
             System.out.println("[SERVER] servant started at " + endpoint + "...");
         }
     }
@@ -209,4 +217,41 @@ public class ServantAdapter implements Adapter {
             selectorManager.stop();
         }
     }
+
+    @Override
+    public void beginDrain(long deadline) {
+        if (selectorManager == null) {
+            return;
+        }
+        selectorManager.beginDrain(deadline);
+        //UDP没有连接，在途请求处理完成后再关闭
+        if (serverChannel instanceof ServerSocketChannel) {
+            closeServerChannel();
+        }
+    }
+
+    @Override
+    public boolean awaitDrained(long deadline) {
+        if (selectorManager == null) {
+            return true;
+        }
+        boolean drained = selectorManager.awaitDrained(deadline);
+        if (!drained) {
+            System.out.println("[SERVER] " + servantAdapterConfig.getServant() + " drain timeout, in-flight requests: "
+                    + selectorManager.getInFlightRequests());
+        }
+        selectorManager.closeSessions();
+        closeServerChannel();
+        return drained;
+    }
+
+    private void closeServerChannel() {
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
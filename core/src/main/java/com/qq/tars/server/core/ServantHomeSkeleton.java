@@ -16,10 +16,17 @@
 
 package com.qq.tars.server.core;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.qq.tars.net.core.Processor;
 import com.qq.tars.rpc.protocol.Codec;
+import com.qq.tars.server.common.ServerLogger;
 
 /**
  * Servant Skeleton
@@ -32,6 +39,9 @@ public class ServantHomeSkeleton extends AppService {
     private Class<? extends Codec> codecClazz = null;
     private Class<? extends Processor> processorClazz = null;
 
+    //method -> 预编译的调用器
+    private final ConcurrentHashMap<Method, MethodInvoker> invokerMap = new ConcurrentHashMap<Method, MethodInvoker>();
+
     public ServantHomeSkeleton(String name, Object servantImpl, Class<?> apiClass, Class<? extends Codec> codecClazz,
                                Class<? extends Processor> processorClazz, int loadLimit) {
         this.name = name;
@@ -39,6 +49,33 @@ public class ServantHomeSkeleton extends AppService {
         this.apiClass = apiClass;
         this.codecClazz = codecClazz;
         this.processorClazz = processorClazz;
+        initMethodInvokers();
+    }
+
+    /**
+     * 绑定时为api的所有方法预先生成调用器，避免每次请求反射和参数类型判断
+     */
+    private void initMethodInvokers() {
+        if (apiClass == null || servantImpl == null) {
+            return;
+        }
+        for (Method method : apiClass.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                invokerMap.put(method, new MethodInvoker(method, servantImpl));
+            }
+        }
+    }
+
+    private MethodInvoker getMethodInvoker(Method method) {
+        MethodInvoker invoker = invokerMap.get(method);
+        if (invoker == null) {
+            invoker = new MethodInvoker(method, servantImpl);
+            MethodInvoker old = invokerMap.putIfAbsent(method, invoker);
+            if (old != null) {
+                invoker = old;
+            }
+        }
+        return invoker;
     }
 
     public Object getServant() {
@@ -56,7 +93,7 @@ public class ServantHomeSkeleton extends AppService {
         Object value = null;
         try {
             preInvokeCapHomeSkeleton();
-            value = method.invoke(this.servantImpl, fixParamValueType(method, args));
+            value = getMethodInvoker(method).invoke(args);
         } finally {
             if (!ContextManager.getContext().response().isAsyncMode()) {
                 postInvokeCapHomeSkeleton();
@@ -65,38 +102,6 @@ public class ServantHomeSkeleton extends AppService {
         return value;
     }
 
-    private Object[] fixParamValueType(Method method, Object args[]) {
-        if (args == null || args.length == 0) return args;
-        Class<?> parameterTypes[] = method.getParameterTypes();
-        if (parameterTypes == null || parameterTypes.length == 0) return args;
-
-        if (args.length != parameterTypes.length) return args;
-
-        for (int i = 0; i < parameterTypes.length; i++) {
-            args[i] = fixValueDataType(parameterTypes[i], args[i]);
-        }
-
-        return args;
-    }
-
-    private final Object fixValueDataType(Class<?> dataType, Object value) {
-        Object dataValue = value;
-
-        if (dataType != null && dataValue != null) {
-            if ("short" == dataType.getName()) {
-                dataValue = Short.valueOf(dataValue.toString());
-            } else if ("byte" == dataType.getName()) {
-                dataValue = Byte.valueOf(dataValue.toString());
-            } else if (char.class == dataType) {
-                dataValue = ((String) value).charAt(0);
-            } else if ("float" == dataType.getName()) {
-                dataValue = Float.valueOf(dataValue.toString());
-            }
-        }
-
-        return dataValue;
-    }
-
     public void preInvokeCapHomeSkeleton() {
     }
 
@@ -128,4 +133,179 @@ public class ServantHomeSkeleton extends AppService {
     public AppContext getAppContext() {
         return appContext;
     }
+
+    /**
+     * 单个servant方法的调用器，参数类型修正方式在创建时确定
+     */
+    private static final class MethodInvoker {
+
+        private static final Object[] EMPTY_ARGS = new Object[0];
+
+        private static final byte FIX_NONE = 0;
+        private static final byte FIX_SHORT = 1;
+        private static final byte FIX_BYTE = 2;
+        private static final byte FIX_CHAR = 3;
+        private static final byte FIX_FLOAT = 4;
+
+        private static final byte RANK_BYTE = 1;
+        private static final byte RANK_SHORT = 2;
+        private static final byte RANK_INT = 3;
+        private static final byte RANK_LONG = 4;
+        private static final byte RANK_FLOAT = 5;
+        private static final byte RANK_DOUBLE = 6;
+
+        private final Method method;
+        private final Object target;
+        //(Object[])Object, 为null时退回反射调用
+        private final MethodHandle handle;
+        private final Class<?>[] argTypes;
+        //基本类型参数的拓宽顺序, 非基本类型为0
+        private final byte[] ranks;
+        private final boolean[] primitives;
+        private final byte[] fixTypes;
+        private final boolean needFix;
+
+        MethodInvoker(Method method, Object target) {
+            this.method = method;
+            this.target = target;
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            this.argTypes = new Class<?>[parameterTypes.length];
+            this.ranks = new byte[parameterTypes.length];
+            this.primitives = new boolean[parameterTypes.length];
+            this.fixTypes = new byte[parameterTypes.length];
+            boolean fix = false;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                Class<?> type = parameterTypes[i];
+                primitives[i] = type.isPrimitive();
+                argTypes[i] = type;
+                ranks[i] = rankOf(type);
+                fixTypes[i] = fixTypeOf(type);
+                fix |= fixTypes[i] != FIX_NONE;
+            }
+            this.needFix = fix;
+            this.handle = createHandle(method, target, parameterTypes.length);
+        }
+
+        private static byte fixTypeOf(Class<?> type) {
+            if (type == short.class) {
+                return FIX_SHORT;
+            } else if (type == byte.class) {
+                return FIX_BYTE;
+            } else if (type == char.class) {
+                return FIX_CHAR;
+            } else if (type == float.class) {
+                return FIX_FLOAT;
+            }
+            return FIX_NONE;
+        }
+
+        private static MethodHandle createHandle(Method method, Object target, int argCount) {
+            if (target == null || Modifier.isStatic(method.getModifiers())) {
+                return null;
+            }
+            try {
+                if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                    method.setAccessible(true);
+                }
+                //参数按Object传入, 基本类型由asType拆箱并按需拓宽, 与Method.invoke的转换规则一致
+                return MethodHandles.lookup().unreflect(method).bindTo(target)
+                        .asSpreader(Object[].class, argCount)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (Exception e) {
+                ServerLogger.stderr().error("create method handle for " + method + " failed, use reflection instead", e);
+                return null;
+            }
+        }
+
+        Object invoke(Object[] args) throws Exception {
+            if (handle == null) {
+                return method.invoke(target, fixParamValueType(args));
+            }
+            if (args == null) {
+                args = EMPTY_ARGS;
+            }
+            if (args.length != argTypes.length) {
+                throw new IllegalArgumentException("wrong number of arguments");
+            }
+            for (int i = 0; i < args.length; i++) {
+                Object arg = args[i];
+                if (arg == null) {
+                    if (primitives[i]) {
+                        throw new IllegalArgumentException();
+                    }
+                    continue;
+                }
+                if (needFix && fixTypes[i] != FIX_NONE) {
+                    arg = args[i] = fixValueDataType(fixTypes[i], arg);
+                }
+                if (primitives[i] ? !isWidening(ranks[i], argTypes[i], arg) : !argTypes[i].isInstance(arg)) {
+                    throw new IllegalArgumentException("argument type mismatch");
+                }
+            }
+            try {
+                return handle.invokeExact(args);
+            } catch (Throwable cause) {
+                //与Method.invoke保持一致，业务异常包装为InvocationTargetException
+                throw new InvocationTargetException(cause);
+            }
+        }
+
+        private static byte rankOf(Class<?> type) {
+            if (type == byte.class || type == Byte.class) {
+                return RANK_BYTE;
+            } else if (type == short.class || type == Short.class) {
+                return RANK_SHORT;
+            } else if (type == int.class || type == Integer.class) {
+                return RANK_INT;
+            } else if (type == long.class || type == Long.class) {
+                return RANK_LONG;
+            } else if (type == float.class || type == Float.class) {
+                return RANK_FLOAT;
+            } else if (type == double.class || type == Double.class) {
+                return RANK_DOUBLE;
+            }
+            return 0;
+        }
+
+        /**
+         * 基本类型参数是否接受该实参, 规则同Method.invoke: 拆箱后相同或可拓宽(JLS 5.1.2)
+         */
+        private static boolean isWidening(byte rank, Class<?> type, Object arg) {
+            Class<?> from = arg.getClass();
+            if (from == Boolean.class) {
+                return type == boolean.class;
+            } else if (from == Character.class) {
+                return type == char.class || rank >= RANK_INT;
+            }
+            int fromRank = rankOf(from);
+            return fromRank > 0 && fromRank <= rank;
+        }
+
+        private Object[] fixParamValueType(Object[] args) {
+            if (args == null || args.length != fixTypes.length || !needFix) {
+                return args;
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] != null && fixTypes[i] != FIX_NONE) {
+                    args[i] = fixValueDataType(fixTypes[i], args[i]);
+                }
+            }
+            return args;
+        }
+
+        private static Object fixValueDataType(byte fixType, Object value) {
+            switch (fixType) {
+                case FIX_SHORT:
+                    return value instanceof Short ? value : Short.valueOf(value.toString());
+                case FIX_BYTE:
+                    return value instanceof Byte ? value : Byte.valueOf(value.toString());
+                case FIX_CHAR:
+                    return value instanceof Character ? value : ((String) value).charAt(0);
+                case FIX_FLOAT:
+                    return value instanceof Float ? value : Float.valueOf(value.toString());
+                default:
+                    return value;
+            }
+        }
+    }
 }
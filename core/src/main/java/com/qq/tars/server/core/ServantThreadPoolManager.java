@@ -17,12 +17,16 @@
 package com.qq.tars.server.core;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import com.qq.tars.common.util.concurrent.TaskQueue;
 import com.qq.tars.common.util.concurrent.TaskThreadFactory;
 import com.qq.tars.common.util.concurrent.TaskThreadPoolExecutor;
+import com.qq.tars.common.util.concurrent.VirtualThreadExecutor;
 import com.qq.tars.server.config.ServantAdapterConfig;
 
 public final class ServantThreadPoolManager {
@@ -66,10 +70,52 @@ public final class ServantThreadPoolManager {
             return createDefaultExecutor(key);
         }
 
+        if (config.isVirtualThreads()) {
+            if (VirtualThreadExecutor.isSupported()) {
+                //与线程池相同的容量: 处理中和排队中的请求数之和
+                executor = VirtualThreadExecutor.create("ServantVirtualThread-exec-" + key + '-', Math.max(maxPoolSize, 1) + queueSize);
+                threadExecutors.put(key, executor);
+                return executor;
+            }
+            System.err.println("virtual threads are not supported by java " + System.getProperty("java.version") + ", use thread pool for " + key);
+        }
+
         TaskQueue taskqueue = new TaskQueue(queueSize);
         TaskThreadPoolExecutor pool = new TaskThreadPoolExecutor(minPoolSize, maxPoolSize, 120, TimeUnit.SECONDS, taskqueue, new TaskThreadFactory("ServantThreadPool-exec-" + key + '-'));
         taskqueue.setParent(pool);
         threadExecutors.put(key, pool);
         return pool;
     }
+
+    /**
+     * 关闭所有servant线程池, 等待队列中的任务执行完成直到截止时间
+     * @param deadline 截止时间(毫秒时间戳)
+     */
+    public static synchronized void shutdown(long deadline) {
+        Map<Executor, Boolean> executors = new IdentityHashMap<Executor, Boolean>();
+        for (Executor executor : threadExecutors.values()) {
+            executors.put(executor, Boolean.TRUE);
+        }
+        for (Executor executor : executors.keySet()) {
+            if (executor instanceof ExecutorService) {
+                ((ExecutorService) executor).shutdown();
+            }
+        }
+        for (Executor executor : executors.keySet()) {
+            if (!(executor instanceof ExecutorService)) {
+                continue;
+            }
+            ExecutorService executorService = (ExecutorService) executor;
+            try {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0 || !executorService.awaitTermination(wait, TimeUnit.MILLISECONDS)) {
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        threadExecutors.clear();
+    }
 }
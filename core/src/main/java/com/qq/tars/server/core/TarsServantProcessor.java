@@ -22,6 +22,7 @@ import com.qq.tars.common.FilterChain;
 import com.qq.tars.common.FilterKind;
 import com.qq.tars.common.support.Endpoint;
 import com.qq.tars.common.util.Constants;
+import com.qq.tars.common.util.Deadline;
 import com.qq.tars.common.util.DyeingKeyCache;
 import com.qq.tars.common.util.DyeingSwitch;
 import com.qq.tars.context.DistributedContext;
@@ -33,8 +34,10 @@ import com.qq.tars.net.core.Session;
 import com.qq.tars.protocol.tars.support.TarsMethodInfo;
 import com.qq.tars.protocol.util.TarsHelper;
 import com.qq.tars.rpc.exc.TarsException;
+import com.qq.tars.rpc.protocol.tars.TarsCodec;
 import com.qq.tars.rpc.protocol.tars.TarsServantRequest;
 import com.qq.tars.rpc.protocol.tars.TarsServantResponse;
+import com.qq.tars.server.common.ServerLogger;
 import com.qq.tars.server.config.ConfigurationManager;
 import com.qq.tars.server.config.ServantAdapterConfig;
 import com.qq.tars.server.config.ServerConfig;
@@ -44,7 +47,9 @@ import com.qq.tars.support.om.OmServiceMngr;
 import com.qq.tars.support.stat.InvokeStatHelper;
 import com.qq.tars.support.trace.TraceManager;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -114,6 +119,9 @@ public class TarsServantProcessor extends Processor {
      */
     @Override
     public Response process(Request req, Session session) {
+        if (TarsHelper.isBatch(((TarsServantRequest) req).getFunctionName())) {
+            return processBatch((TarsServantRequest) req, session);
+        }
 //        AppContainer container = null;
         TarsServantRequest request = null;
         TarsServantResponse response = null;
@@ -142,34 +150,46 @@ public class TarsServantProcessor extends Processor {
                 //默认10秒超时
                 throw new TarsException("Wait too long, server busy.");
             }
+            //客户端已经超时的请求不再执行
+            int timeout = request.getTimeout();
+            if (timeout > 0 && waitingTime >= timeout) {
+                response.setRet(TarsHelper.SERVERQUEUETIMEOUT);
+                remark = "deadline exceeded in queue, waitingTime=" + waitingTime + ", timeout=" + timeout;
+                return response;
+            }
 
 //            container = ContainerManager.getContainer(AppContainer.class);
+            //客户端ip、服务名、方法名和session在第一次读取时从request中获取
             Context<?, ?> context = ContextManager.registerContext(request, response);
             context.setAttribute(Context.INTERNAL_START_TIME, startTime);
-            context.setAttribute(Context.INTERNAL_CLIENT_IP, session.getRemoteIp());
 //            context.setAttribute(Context.INTERNAL_APP_NAME, container.getDefaultAppContext().name());
-            context.setAttribute(Context.INTERNAL_SERVICE_NAME, request.getServantName());
-            context.setAttribute(Context.INTERNAL_METHOD_NAME, request.getFunctionName());
-            context.setAttribute(Context.INTERNAL_SESSION_DATA, session);
 
             DistributedContext distributedContext = DistributedContextManager.getDistributedContext();
             distributedContext.put(DyeingSwitch.REQ, request);
             distributedContext.put(DyeingSwitch.RES, response);
             distributedContext.put(TraceManager.INTERNAL_SERVANT_NAME, request.getServantName());
+            if (timeout > 0) {
+                //下游调用的超时不超过本次请求的剩余时间
+                Deadline.set(req.getBornTime() + timeout);
+            }
 
             appContext = AppContextManager.getInstance().getAppContext();
             if (appContext == null) throw new RuntimeException("failed to find the application named:[ROOT]");
 
 //            Thread.currentThread().setContextClassLoader(appContext.getAppContextClassLoader());
             //dyeing
-            preInvokeSkeleton();
+            initDyeing(request);
             skeleton = appContext.getCapHomeSkeleton(request.getServantName());
             if (skeleton == null)
                 throw new RuntimeException("failed to find the servant named[" + request.getServantName() + "]");
-            List<Filter> filters = AppContextManager.getInstance().getAppContext().getFilters(FilterKind.SERVER);
-            FilterChain filterChain = new TarsServerFilterChain(filters, request.getServantName(), FilterKind.SERVER, skeleton);
+            List<Filter> filters = appContext.getFilters(FilterKind.SERVER);
             //执行服务端方法
-            filterChain.doFilter(request, response);
+            if (filters == null || filters.isEmpty()) {
+                TarsServerFilterChain.invoke(skeleton, request, response);
+            } else {
+                FilterChain filterChain = new TarsServerFilterChain(filters, request.getServantName(), FilterKind.SERVER, skeleton);
+                filterChain.doFilter(request, response);
+            }
         } catch (Throwable cause) {
             cause.printStackTrace();
             System.err.println("ERROR: " + cause.getMessage());
@@ -205,6 +225,62 @@ public class TarsServantProcessor extends Processor {
         return response;
     }
 
+    /**
+     * 服务排空超时后仍在队列中的请求直接返回SERVEROVERLOAD, 客户端无需等待超时
+     * @param req
+     * @param session
+     * @return
+     */
+    @Override
+    public Response processDraining(Request req, Session session) {
+        TarsServantRequest request = (TarsServantRequest) req;
+        if (TarsHelper.isBatch(request.getFunctionName())) {
+            return processBatch(request, session);
+        }
+        TarsServantResponse response = createResponse(request, session);
+        response.setTicketNumber(req.getTicketNumber());
+        if (response.getRet() == TarsHelper.SERVERSUCCESS) {
+            response.setRet(TarsHelper.SERVEROVERLOAD);
+            response.setRemark("server is shutting down");
+        }
+        return response;
+    }
+
+    /**
+     * 批量请求包: 各个子请求和连接上读取的请求一样交给服务线程池并行处理, 各自写回自己的响应.
+     * 子请求的排队时间从批量请求包读取时开始计算, 处理时间在各自开始执行时记录. 批量请求包本身是单向请求, 不返回响应
+     * @param request
+     * @param session
+     * @return
+     */
+    private Response processBatch(TarsServantRequest request, Session session) {
+        TarsServantResponse response = createResponse(request, session);
+        response.setTicketNumber(request.getTicketNumber());
+        response.setPacketType(TarsHelper.ONEWAY);
+        if (response.getRet() != TarsHelper.SERVERSUCCESS) {
+            return response;
+        }
+        List<TarsServantRequest> requests;
+        try {
+            requests = ((TarsCodec) session.getProtocolFactory().getDecoder()).decodeBatchRequests(request);
+        } catch (Exception e) {
+            ServerLogger.stderr().error("failed to decode batch request", e);
+            return response;
+        }
+        for (TarsServantRequest subRequest : requests) {
+            if (TarsHelper.isBatch(subRequest.getFunctionName())) {
+                continue;
+            }
+            subRequest.setBornTime(request.getBornTime());
+            try {
+                session.dispatch(subRequest);
+            } catch (Exception e) {
+                ServerLogger.stderr().error("failed to dispatch batch sub request|" + subRequest.getServantName() + "|" + subRequest.getFunctionName(), e);
+            }
+        }
+        return response;
+    }
+
     private void reportServerStat(TarsServantRequest request, TarsServantResponse response, long startTime) {
         if (request.getVersion() == TarsHelper.VERSION2 || request.getVersion() == TarsHelper.VERSION3) {
             reportServerStat(Constants.TARS_TUP_CLIENT, request, response, startTime);
@@ -246,6 +322,12 @@ public class TarsServantProcessor extends Processor {
         response.setPacketType(request.getPacketType());
         response.setMessageType(request.getMessageType());
         response.setStatus(request.getStatus());
+        if (request.getStatus() != null && request.getStatus().containsKey(TarsHelper.STATUS_BATCH)) {
+            //回应客户端的询问, 声明支持批量请求
+            Map<String, String> status = new HashMap<String, String>(request.getStatus());
+            status.put(TarsHelper.STATUS_BATCH, TarsHelper.BATCH_SUPPORTED);
+            response.setStatus(status);
+        }
         response.setRequest(request);
         response.setCharsetName(request.getCharsetName());
         response.setTimeout(request.getTimeout());
@@ -276,6 +358,10 @@ public class TarsServantProcessor extends Processor {
             DyeingSwitch.enableUnactiveDyeing(routeKey, fileName);
             return;
         }
+        if (DyeingKeyCache.getInstance().isEmpty()) {
+            //未配置染色key, 无需查找
+            return;
+        }
         String cache_routeKey = DyeingKeyCache.getInstance().get(request.getServantName(), request.getFunctionName());
         if (cache_routeKey == null) {
             cache_routeKey = DyeingKeyCache.getInstance().get(request.getServantName(), "DyeingAllFunctionsFromInterface");
@@ -26,10 +26,21 @@ public class TarsServerFilterChain extends AbstractFilterChain<ServantHomeSkelet
 	@Override
 	protected void doRealInvoke(Request request, Response response)
 			throws Throwable {
-		if (request instanceof TarsServantRequest && target != null) {
+		invoke(target, request, response);
+	}
+
+	/**
+	 * 未配置过滤器时直接调用，不创建调用链
+	 * @param skeleton
+	 * @param request
+	 * @param response
+	 * @throws Throwable
+	 */
+	static void invoke(ServantHomeSkeleton skeleton, Request request, Response response) throws Throwable {
+		if (request instanceof TarsServantRequest && skeleton != null) {
 			TarsServantRequest tarsServantRequest = (TarsServantRequest)request;
 			//真实的服务端方法执行
-			Object value = target.invoke(tarsServantRequest.getMethodInfo().getMethod(), tarsServantRequest.getMethodParameters());
+			Object value = skeleton.invoke(tarsServantRequest.getMethodInfo().getMethod(), tarsServantRequest.getMethodParameters());
 			TarsServantResponse tarsServantResponse = (TarsServantResponse) response;
 			tarsServantResponse.setResult(value);
 		}
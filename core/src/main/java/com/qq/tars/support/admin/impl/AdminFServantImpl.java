@@ -23,6 +23,8 @@ import com.qq.tars.common.util.StringUtils;
 import com.qq.tars.server.config.ConfigurationManager;
 import com.qq.tars.server.config.ServantAdapterConfig;
 import com.qq.tars.server.config.ServerConfig;
+import com.qq.tars.server.core.AppContext;
+import com.qq.tars.server.core.AppContextManager;
 import com.qq.tars.support.admin.AdminFServant;
 import com.qq.tars.support.admin.CommandHandler;
 import com.qq.tars.support.admin.CustemCommandHelper;
@@ -50,6 +52,8 @@ public class AdminFServantImpl implements AdminFServant {
 
     private static final String CMD_SET_DYEING = "tars.setdyeing";
 
+    private static final String CMD_DRAIN = "tars.drain";
+
     private static final String ADATER_CONN = "[adater:%sAdapter] [connections:%d]\n";
 
     @Override
@@ -94,6 +98,8 @@ public class AdminFServantImpl implements AdminFServant {
             result.append(reportServerVersion() + "\n");
         } else if (CMD_SET_DYEING.equals(comm)) {
             result.append(loadDyeing(params) + "\n");
+        } else if (CMD_DRAIN.equals(comm)) {
+            result.append(drain(params) + "\n");
         } else {
             final CommandHandler handler = CustemCommandHelper.getInstance().getCommandHandler(comm);
             final String cmdName = comm;
@@ -120,6 +126,40 @@ public class AdminFServantImpl implements AdminFServant {
         return result.toString();
     }
 
+    /**
+     * 排空业务servant, 用于发布前摘除流量. 参数为超时时间(毫秒), 默认使用server配置的draintimeout
+     * @param params
+     * @return
+     */
+    private String drain(String params) {
+        final AppContext appContext = AppContextManager.getInstance().getAppContext();
+        if (appContext == null) {
+            return "drain failed, app context is null";
+        }
+        long timeout = ConfigurationManager.getInstance().getServerConfig().getDrainTimeout();
+        if (StringUtils.isNotEmpty(params)) {
+            try {
+                timeout = Long.parseLong(params.trim());
+            } catch (NumberFormatException e) {
+                return "invalid params";
+            }
+        }
+        final long drainTimeout = timeout;
+        Thread drainThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    appContext.drain(drainTimeout);
+                } catch (Exception e) {
+                    OmLogger.record("drain error", e);
+                }
+            }
+        }, "ServantDrainThread");
+        drainThread.start();
+        return "drain started, timeout=" + drainTimeout + "ms";
+    }
+
     private String setLoggerLevel(String level) {
         String result = null;
 
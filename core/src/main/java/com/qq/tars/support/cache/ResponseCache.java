@@ -0,0 +1,269 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.support.cache;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.qq.tars.protocol.tars.TarsInputStream;
+import com.qq.tars.protocol.tars.TarsOutputStream;
+import com.qq.tars.protocol.tars.support.TarsMethodInfo;
+import com.qq.tars.protocol.tars.support.TarsMethodParameterInfo;
+import com.qq.tars.protocol.util.TarsHelper;
+import com.qq.tars.support.om.OmConstants;
+import com.qq.tars.support.property.PropertyReportHelper;
+
+/**
+ * 单个servant方法的本地响应缓存, 以编码后的请求参数为key, 缓存编码后的返回值.
+ * 超过maxSize时淘汰最久未访问的结果, 相同参数的并发未命中只有一个调用真正发出请求
+ */
+public class ResponseCache {
+
+    //请求上下文的编码tag, 与方法参数的tag区分
+    private static final int CONTEXT_TAG = 100;
+
+    private final TarsMethodInfo methodInfo;
+    private final String charsetName;
+    private final long ttl;
+    private final int maxSize;
+
+    //按访问顺序排列, 访问时需要持有this锁
+    private final LinkedHashMap<Key, Entry> entries;
+    private final ConcurrentHashMap<Key, Flight> flights = new ConcurrentHashMap<Key, Flight>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public ResponseCache(TarsMethodInfo methodInfo, String charsetName, long ttl, final int maxSize) {
+        this.methodInfo = methodInfo;
+        this.charsetName = charsetName;
+        this.ttl = ttl;
+        this.maxSize = Math.max(maxSize, 1);
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > ResponseCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return 未过期的缓存结果, 没有时返回null
+     */
+    public byte[] get(Key key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expireTime > now) {
+                    hitCount.incrementAndGet();
+                    PropertyReportHelper.getInstance().reportPropertyValue(OmConstants.PropCacheHit, 1);
+                    return entry.value;
+                }
+                entries.remove(key);
+            }
+        }
+        missCount.incrementAndGet();
+        PropertyReportHelper.getInstance().reportPropertyValue(OmConstants.PropCacheMiss, 1);
+        return null;
+    }
+
+    public void put(Key key, byte[] value) {
+        Entry entry = new Entry(value, System.currentTimeMillis() + ttl);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 登记一次未命中后发出的请求
+     * @return 已有相同参数的请求在进行时返回该请求, 当前调用应等待其结果; 否则返回null
+     */
+    public Flight join(Key key, Flight flight) {
+        Flight current = flights.putIfAbsent(key, flight);
+        if (current != null) {
+            coalescedCount.incrementAndGet();
+            PropertyReportHelper.getInstance().reportPropertyValue(OmConstants.PropCacheCoalesced, 1);
+        }
+        return current;
+    }
+
+    /**
+     * 请求结束, 唤醒等待相同结果的调用
+     * @param value 编码后的返回值, 请求失败时为null
+     */
+    public void finish(Key key, Flight flight, byte[] value) {
+        flights.remove(key, flight);
+        flight.complete(value);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 未命中时合并到其他相同请求上的调用数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * 有返回值且没有输出参数的方法才能缓存
+     */
+    public static boolean isCacheable(TarsMethodInfo methodInfo) {
+        TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
+        if (returnInfo == null || returnInfo.getType() == Void.TYPE) {
+            return false;
+        }
+        for (TarsMethodParameterInfo parameterInfo : methodInfo.getParametersList()) {
+            if (TarsHelper.isHolder(parameterInfo.getAnnotations())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按请求包体的方式编码参数, 并带上请求上下文
+     */
+    public Key newKey(Object[] parameters, Map<String, String> context) {
+        TarsOutputStream os = new TarsOutputStream(128);
+        os.setServerEncoding(charsetName);
+        for (TarsMethodParameterInfo parameterInfo : methodInfo.getParametersList()) {
+            if (TarsHelper.isContext(parameterInfo.getAnnotations()) || TarsHelper.isCallback(parameterInfo.getAnnotations())) {
+                continue;
+            }
+            Object value = parameters[parameterInfo.getOrder() - 1];
+            if (value != null) {
+                os.write(value, parameterInfo.getOrder());
+            }
+        }
+        if (context != null && !context.isEmpty()) {
+            os.write(context, CONTEXT_TAG);
+        }
+        return new Key(os.toByteArray());
+    }
+
+    public byte[] encodeResult(Object result) {
+        TarsOutputStream os = new TarsOutputStream(128);
+        os.setServerEncoding(charsetName);
+        if (result != null) {
+            os.write(result, methodInfo.getReturnInfo().getOrder());
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * 每次命中都重新解码, 调用方修改返回的对象不会影响缓存
+     */
+    public Object decodeResult(byte[] value) {
+        if (value.length == 0) {
+            return null;
+        }
+        TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
+        TarsInputStream is = new TarsInputStream(value);
+        is.setServerEncoding(charsetName);
+        return is.read(returnInfo.getStamp(), returnInfo.getOrder(), true);
+    }
+
+    /**
+     * 编码后的请求参数
+     */
+    public static final class Key {
+
+        private final byte[] data;
+        private final int hash;
+
+        public Key(byte[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(data, other.data);
+        }
+    }
+
+    /**
+     * 正在进行的请求
+     */
+    public static final class Flight {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile byte[] value;
+
+        void complete(byte[] value) {
+            this.value = value;
+            latch.countDown();
+        }
+
+        /**
+         * @return 请求成功时的编码结果, 请求失败或等待超时返回null
+         */
+        public byte[] await(long timeout) throws InterruptedException {
+            if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+            return value;
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] value;
+        private final long expireTime;
+
+        Entry(byte[] value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Tencent is pleased to support the open source community by making Tars available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.qq.tars.support.cache;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.qq.tars.protocol.tars.annotation.TarsCache;
+import com.qq.tars.protocol.tars.support.TarsMethodInfo;
+import com.qq.tars.protocol.util.TarsHelper;
+import com.qq.tars.rpc.protocol.tars.support.AnalystManager;
+
+/**
+ * 管理标注了TarsCache的方法的响应缓存, 同一个接口用于不同servant时各自独立缓存
+ */
+public class ResponseCacheManager {
+
+    private static final ResponseCacheManager instance = new ResponseCacheManager();
+
+    //未标注TarsCache或不能缓存的方法
+    private static final ConcurrentHashMap<String, ResponseCache> NONE = new ConcurrentHashMap<String, ResponseCache>();
+
+    private final ConcurrentHashMap<Method, ConcurrentHashMap<String, ResponseCache>> caches = new ConcurrentHashMap<Method, ConcurrentHashMap<String, ResponseCache>>();
+
+    private ResponseCacheManager() {
+    }
+
+    public static ResponseCacheManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return 方法没有标注TarsCache或不能缓存时返回null
+     */
+    public ResponseCache getCache(String servantName, Class<?> api, Method method, String charsetName) {
+        ConcurrentHashMap<String, ResponseCache> servants = caches.get(method);
+        if (servants == null) {
+            servants = isCacheable(api, method) ? new ConcurrentHashMap<String, ResponseCache>() : NONE;
+            ConcurrentHashMap<String, ResponseCache> current = caches.putIfAbsent(method, servants);
+            if (current != null) {
+                servants = current;
+            }
+        }
+        if (servants == NONE) {
+            return null;
+        }
+        ResponseCache cache = servants.get(servantName);
+        if (cache == null) {
+            TarsCache annotation = method.getAnnotation(TarsCache.class);
+            ResponseCache tmp = new ResponseCache(AnalystManager.getInstance().getMethodMap(api).get(method), charsetName, annotation.ttl(), annotation.maxSize());
+            cache = servants.putIfAbsent(servantName, tmp);
+            if (cache == null) {
+                cache = tmp;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 只缓存tars接口中标注了TarsCache的同步方法
+     */
+    private boolean isCacheable(Class<?> api, Method method) {
+        if (method.getAnnotation(TarsCache.class) == null || TarsHelper.isAsync(method.getName())) {
+            return false;
+        }
+        Map<Method, TarsMethodInfo> methodMap = AnalystManager.getInstance().getMethodMap(api);
+        TarsMethodInfo methodInfo = methodMap == null ? null : methodMap.get(method);
+        return methodInfo != null && ResponseCache.isCacheable(methodInfo);
+    }
+
+    /**
+     * 清空所有缓存结果, 例如服务端数据发生变更时
+     */
+    public void clear() {
+        for (ConcurrentHashMap<String, ResponseCache> servants : caches.values()) {
+            for (ResponseCache cache : servants.values()) {
+                cache.clear();
+            }
+        }
+    }
+}
@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class ConfigInfo {
+public class ConfigInfo implements TarsSized {
+
+	static {
+		TarsStructFactory.register(ConfigInfo.class, new TarsStructFactory.Creator<ConfigInfo>() {
+			public ConfigInfo create() {
+				return new ConfigInfo();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String appname = "";
@@ -155,6 +163,27 @@ public class ConfigInfo {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != appname) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(appname, 0, _charset));
+		}
+		if (null != servername) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(servername, 1, _charset));
+		}
+		if (null != filename) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(filename, 2, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(bAppOnly, 3, _charset));
+		if (null != host) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(host, 4, _charset));
+		}
+		if (null != setdivision) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(setdivision, 5, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.appname = _is.read(appname, 0, true);
 		this.servername = _is.read(servername, 1, true);
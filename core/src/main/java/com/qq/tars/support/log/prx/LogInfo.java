@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class LogInfo {
+public class LogInfo implements TarsSized {
+
+	static {
+		TarsStructFactory.register(LogInfo.class, new TarsStructFactory.Creator<LogInfo>() {
+			public LogInfo create() {
+				return new LogInfo();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String appname = "";
@@ -231,6 +239,38 @@ public class LogInfo {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != appname) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(appname, 0, _charset));
+		}
+		if (null != servername) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(servername, 1, _charset));
+		}
+		if (null != sFilename) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sFilename, 2, _charset));
+		}
+		if (null != sFormat) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sFormat, 3, _charset));
+		}
+		if (null != setdivision) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(setdivision, 4, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(bHasSufix, 5, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(bHasAppNamePrefix, 6, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(bHasSquareBracket, 7, _charset));
+		if (null != sConcatStr) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sConcatStr, 8, _charset));
+		}
+		if (null != sSepar) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sSepar, 9, _charset));
+		}
+		if (null != sLogType) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sLogType, 10, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.appname = _is.read(appname, 0, true);
 		this.servername = _is.read(servername, 1, true);
@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class ServerInfo {
+public class ServerInfo implements TarsSized {
+
+	static {
+		TarsStructFactory.register(ServerInfo.class, new TarsStructFactory.Creator<ServerInfo>() {
+			public ServerInfo create() {
+				return new ServerInfo();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String application = "";
@@ -123,6 +131,21 @@ public class ServerInfo {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != application) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(application, 0, _charset));
+		}
+		if (null != serverName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(serverName, 1, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(pid, 2, _charset));
+		if (null != adapter) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(adapter, 3, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.application = _is.read(application, 0, true);
 		this.serverName = _is.read(serverName, 1, true);
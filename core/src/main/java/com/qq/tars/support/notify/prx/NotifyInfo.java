@@ -29,7 +29,15 @@ import com.qq.tars.protocol.tars.annotation.*;
  * 上报的信息分页记录
  */
 @TarsStruct
-public class NotifyInfo {
+public class NotifyInfo implements TarsSized {
+
+	static {
+		TarsStructFactory.register(NotifyInfo.class, new TarsStructFactory.Creator<NotifyInfo>() {
+			public NotifyInfo create() {
+				return new NotifyInfo();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 1, isRequire = true)
 	public int nextpage = 0;
@@ -94,6 +102,15 @@ public class NotifyInfo {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		_size = TarsSize.add(_size, TarsSize.sizeOf(nextpage, 1, _charset));
+		if (null != notifyItems) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(notifyItems, 2, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.nextpage = _is.read(nextpage, 1, true);
 		this.notifyItems = (java.util.List<NotifyItem>) _is.read(notifyItems, 2, true);
@@ -29,7 +29,15 @@ import com.qq.tars.protocol.tars.annotation.*;
  * 上报信息的单条内容
  */
 @TarsStruct
-public class NotifyItem {
+public class NotifyItem implements TarsSized {
+
+	static {
+		TarsStructFactory.register(NotifyItem.class, new TarsStructFactory.Creator<NotifyItem>() {
+			public NotifyItem create() {
+				return new NotifyItem();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 1, isRequire = true)
 	public String sTimeStamp = "";
@@ -126,6 +134,21 @@ public class NotifyItem {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != sTimeStamp) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sTimeStamp, 1, _charset));
+		}
+		if (null != sServerId) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sServerId, 2, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(iLevel, 3, _charset));
+		if (null != sMessage) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sMessage, 4, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.sTimeStamp = _is.read(sTimeStamp, 1, true);
 		this.sServerId = _is.read(sServerId, 2, true);
@@ -29,7 +29,15 @@ import com.qq.tars.protocol.tars.annotation.*;
  * notify信息的键值
  */
 @TarsStruct
-public class NotifyKey {
+public class NotifyKey implements TarsSized {
+
+	static {
+		TarsStructFactory.register(NotifyKey.class, new TarsStructFactory.Creator<NotifyKey>() {
+			public NotifyKey create() {
+				return new NotifyKey();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 1, isRequire = true)
 	public String name = "";
@@ -110,6 +118,18 @@ public class NotifyKey {
 		_os.write(page, 3);
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != name) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(name, 1, _charset));
+		}
+		if (null != ip) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(ip, 2, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(page, 3, _charset));
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.name = _is.read(name, 1, true);
 		this.ip = _is.read(ip, 2, true);
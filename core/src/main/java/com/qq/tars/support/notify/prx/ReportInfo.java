@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class ReportInfo {
+public class ReportInfo implements TarsSized {
+
+	static {
+		TarsStructFactory.register(ReportInfo.class, new TarsStructFactory.Creator<ReportInfo>() {
+			public ReportInfo create() {
+				return new ReportInfo();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 1, isRequire = true)
 	public int eType = 0;
@@ -185,6 +193,31 @@ public class ReportInfo {
 		_os.write(eLevel, 8);
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		_size = TarsSize.add(_size, TarsSize.sizeOf(eType, 1, _charset));
+		if (null != sApp) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sApp, 2, _charset));
+		}
+		if (null != sSet) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sSet, 3, _charset));
+		}
+		if (null != sContainer) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sContainer, 4, _charset));
+		}
+		if (null != sServer) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sServer, 5, _charset));
+		}
+		if (null != sMessage) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sMessage, 6, _charset));
+		}
+		if (null != sThreadId) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sThreadId, 7, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(eLevel, 8, _charset));
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.eType = (int) _is.read(eType, 1, true);
 		this.sApp = _is.read(sApp, 2, true);
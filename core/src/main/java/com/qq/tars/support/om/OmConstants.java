@@ -25,6 +25,13 @@ public interface OmConstants {
     String PropThreadCount = "jvm.thread.num";
     String PropGcCount = "jvm.gc.num.";
     String PropGcTime = "jvm.gc.time.";
+    String PropConnectTime = "client.connect.time";
+    String PropConnectFailure = "client.connect.failure";
+    String PropConnectFastFail = "client.connect.fastfail";
+    String PropReconnectBackoff = "client.reconnect.backoff";
+    String PropCacheHit = "client.cache.hit";
+    String PropCacheMiss = "client.cache.miss";
+    String PropCacheCoalesced = "client.cache.coalesced";
 
     String AdminServant = "AdminObj";
 }
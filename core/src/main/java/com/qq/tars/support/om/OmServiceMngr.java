@@ -75,6 +75,14 @@ public class OmServiceMngr {
             PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropGcCount + gcMXBean.getName(), new GCNumCount(gcMXBean.getName()));
             PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropGcTime + gcMXBean.getName(), new GCTimeSum(gcMXBean.getName()));
         }
+        //客户端建连耗时、失败次数、快速失败次数和重连退避时间
+        PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropConnectTime, new CommonPropertyPolicy.Avg(), new CommonPropertyPolicy.Max());
+        PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropConnectFailure, new CommonPropertyPolicy.Sum());
+        PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropConnectFastFail, new CommonPropertyPolicy.Sum());
+        PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropReconnectBackoff, new CommonPropertyPolicy.Sum());
+        PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropCacheHit, new CommonPropertyPolicy.Sum());
+        PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropCacheMiss, new CommonPropertyPolicy.Sum());
+        PropertyReportHelper.getInstance().createPropertyReporter(OmConstants.PropCacheCoalesced, new CommonPropertyPolicy.Sum());
 
         //服务端统计信息初始化
         ServerStatHelper.getInstance().init(communicator);
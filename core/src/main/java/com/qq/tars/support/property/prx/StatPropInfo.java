@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class StatPropInfo {
+public class StatPropInfo implements TarsSized {
+
+	static {
+		TarsStructFactory.register(StatPropInfo.class, new TarsStructFactory.Creator<StatPropInfo>() {
+			public StatPropInfo create() {
+				return new StatPropInfo();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String policy = "";
@@ -93,6 +101,17 @@ public class StatPropInfo {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != policy) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(policy, 0, _charset));
+		}
+		if (null != value) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(value, 1, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.policy = _is.read(policy, 0, true);
 		this.value = _is.read(value, 1, true);
@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class StatPropMsgBody {
+public class StatPropMsgBody implements TarsSized {
+
+	static {
+		TarsStructFactory.register(StatPropMsgBody.class, new TarsStructFactory.Creator<StatPropMsgBody>() {
+			public StatPropMsgBody create() {
+				return new StatPropMsgBody();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public java.util.List<StatPropInfo> vInfo = null;
@@ -77,6 +85,14 @@ public class StatPropMsgBody {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != vInfo) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(vInfo, 0, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.vInfo = (java.util.List<StatPropInfo>) _is.read(vInfo, 0, true);
 	}
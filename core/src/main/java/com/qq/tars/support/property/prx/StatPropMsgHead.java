@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class StatPropMsgHead implements Comparable<StatPropMsgHead> {
+public class StatPropMsgHead implements TarsSized, Comparable<StatPropMsgHead> {
+
+	static {
+		TarsStructFactory.register(StatPropMsgHead.class, new TarsStructFactory.Creator<StatPropMsgHead>() {
+			public StatPropMsgHead create() {
+				return new StatPropMsgHead();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String moduleName = "";
@@ -208,6 +216,33 @@ public class StatPropMsgHead implements Comparable<StatPropMsgHead> {
 		_os.write(iPropertyVer, 7);
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != moduleName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(moduleName, 0, _charset));
+		}
+		if (null != ip) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(ip, 1, _charset));
+		}
+		if (null != propertyName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(propertyName, 2, _charset));
+		}
+		if (null != setName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(setName, 3, _charset));
+		}
+		if (null != setArea) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(setArea, 4, _charset));
+		}
+		if (null != setID) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(setID, 5, _charset));
+		}
+		if (null != sContainer) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(sContainer, 6, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(iPropertyVer, 7, _charset));
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.moduleName = _is.read(moduleName, 0, true);
 		this.ip = _is.read(ip, 1, true);
@@ -26,8 +26,10 @@ import com.qq.tars.common.support.Holder;
 import com.qq.tars.common.util.Constants;
 import com.qq.tars.common.util.StringUtils;
 import com.qq.tars.protocol.util.TarsHelper;
+import com.qq.tars.rpc.exc.TimeoutException;
 import com.qq.tars.support.query.prx.EndpointF;
 import com.qq.tars.support.query.prx.QueryFPrx;
+import com.qq.tars.support.query.prx.QueryFPrxCallback;
 
 /**
  * 查询帮助
@@ -66,13 +68,33 @@ public final class QueryHelper {
             ret = queryProxy.findObjectByIdInSameGroup(name, activeEp, inactiveEp);
         }
 
+        return toServerNodes(name, ret, activeEp.value);
+    }
+
+    /**
+     * 异步查询服务器Node，结果在客户端回调线程中返回
+     * @param config
+     * @param callback
+     */
+    public void getServerNodesAsync(ServantProxyConfig config, ServerNodesCallback callback) {
+        QueryFPrx queryProxy = getPrx();
+        String name = config.getSimpleObjectName();
+        ServerNodesQueryCallback queryCallback = new ServerNodesQueryCallback(name, callback);
+        if (config.isEnableSet()) {
+            queryProxy.async_findObjectByIdInSameSet(queryCallback, name, config.getSetDivision());
+        } else {
+            queryProxy.async_findObjectByIdInSameGroup(queryCallback, name);
+        }
+    }
+
+    private static String toServerNodes(String name, int ret, List<EndpointF> activeEp) {
         if (ret != TarsHelper.SERVERSUCCESS) {
             return null;
         }
 
         StringBuilder value = new StringBuilder();
-        if (activeEp.value != null && !activeEp.value.isEmpty()) {
-            for (EndpointF endpointF : activeEp.value) {
+        if (activeEp != null && !activeEp.isEmpty()) {
+            for (EndpointF endpointF : activeEp) {
                 if (value.length() > 0) {
                     value.append(":");
                 }
@@ -86,4 +108,64 @@ public final class QueryHelper {
         value.insert(0, name);
         return value.toString();
     }
+
+    /**
+     * 异步查询服务器Node的回调
+     */
+    public interface ServerNodesCallback {
+
+        /**
+         * @param nodes 查询失败或无可用节点时为null
+         */
+        void onCompleted(String nodes);
+
+        void onException(Throwable ex);
+    }
+
+    private static final class ServerNodesQueryCallback extends QueryFPrxCallback {
+
+        private final String name;
+        private final ServerNodesCallback callback;
+
+        ServerNodesQueryCallback(String name, ServerNodesCallback callback) {
+            this.name = name;
+            this.callback = callback;
+        }
+
+        @Override
+        public void callback_findObjectByIdInSameGroup(int ret, List<EndpointF> activeEp, List<EndpointF> inactiveEp) {
+            callback.onCompleted(toServerNodes(name, ret, activeEp));
+        }
+
+        @Override
+        public void callback_findObjectByIdInSameSet(int ret, List<EndpointF> activeEp, List<EndpointF> inactiveEp) {
+            callback.onCompleted(toServerNodes(name, ret, activeEp));
+        }
+
+        @Override
+        public void callback_findObjectById(List<EndpointF> ret) {
+        }
+
+        @Override
+        public void callback_findObjectById4Any(int ret, List<EndpointF> activeEp, List<EndpointF> inactiveEp) {
+        }
+
+        @Override
+        public void callback_findObjectById4All(int ret, List<EndpointF> activeEp, List<EndpointF> inactiveEp) {
+        }
+
+        @Override
+        public void callback_findObjectByIdInSameStation(int ret, List<EndpointF> activeEp, List<EndpointF> inactiveEp) {
+        }
+
+        @Override
+        public void callback_exception(Throwable ex) {
+            callback.onException(ex);
+        }
+
+        @Override
+        public void callback_expired() {
+            callback.onException(new TimeoutException("query " + name + " expired"));
+        }
+    }
 }
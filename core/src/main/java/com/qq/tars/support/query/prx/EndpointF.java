@@ -29,7 +29,15 @@ import com.qq.tars.protocol.tars.annotation.*;
  * 端口信息
  */
 @TarsStruct
-public class EndpointF implements Comparable<EndpointF> {
+public class EndpointF implements TarsSized, Comparable<EndpointF> {
+
+	static {
+		TarsStructFactory.register(EndpointF.class, new TarsStructFactory.Creator<EndpointF>() {
+			public EndpointF create() {
+				return new EndpointF();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String host = "";
@@ -259,6 +267,27 @@ public class EndpointF implements Comparable<EndpointF> {
 		_os.write(weightType, 12);
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != host) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(host, 0, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(port, 1, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(timeout, 2, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(istcp, 3, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(grid, 4, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(groupworkid, 5, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(grouprealid, 6, _charset));
+		if (null != setId) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(setId, 7, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(qos, 8, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(bakFlag, 9, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(weight, 11, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(weightType, 12, _charset));
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.host = _is.read(host, 0, true);
 		this.port = _is.read(port, 1, true);
@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class ProxyInfo {
+public class ProxyInfo implements TarsSized {
+
+	static {
+		TarsStructFactory.register(ProxyInfo.class, new TarsStructFactory.Creator<ProxyInfo>() {
+			public ProxyInfo create() {
+				return new ProxyInfo();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public boolean bFromClient = false;
@@ -75,6 +83,12 @@ public class ProxyInfo {
 		_os.write(bFromClient, 0);
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		_size = TarsSize.add(_size, TarsSize.sizeOf(bFromClient, 0, _charset));
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.bFromClient = _is.read(bFromClient, 0, true);
 	}
@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class StatMicMsgBody {
+public class StatMicMsgBody implements TarsSized {
+
+	static {
+		TarsStructFactory.register(StatMicMsgBody.class, new TarsStructFactory.Creator<StatMicMsgBody>() {
+			public StatMicMsgBody create() {
+				return new StatMicMsgBody();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public int count = 0;
@@ -161,6 +169,20 @@ public class StatMicMsgBody {
 		_os.write(minRspTime, 6);
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		_size = TarsSize.add(_size, TarsSize.sizeOf(count, 0, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(timeoutCount, 1, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(execCount, 2, _charset));
+		if (null != intervalCount) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(intervalCount, 3, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(totalRspTime, 4, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(maxRspTime, 5, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(minRspTime, 6, _charset));
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.count = _is.read(count, 0, true);
 		this.timeoutCount = _is.read(timeoutCount, 1, true);
@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class StatMicMsgHead implements Comparable<StatMicMsgHead> {
+public class StatMicMsgHead implements TarsSized, Comparable<StatMicMsgHead> {
+
+	static {
+		TarsStructFactory.register(StatMicMsgHead.class, new TarsStructFactory.Creator<StatMicMsgHead>() {
+			public StatMicMsgHead create() {
+				return new StatMicMsgHead();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String masterName = "";
@@ -273,6 +281,40 @@ public class StatMicMsgHead implements Comparable<StatMicMsgHead> {
 		}
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != masterName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(masterName, 0, _charset));
+		}
+		if (null != slaveName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(slaveName, 1, _charset));
+		}
+		if (null != interfaceName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(interfaceName, 2, _charset));
+		}
+		if (null != masterIp) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(masterIp, 3, _charset));
+		}
+		if (null != slaveIp) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(slaveIp, 4, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(slavePort, 5, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(returnValue, 6, _charset));
+		if (null != slaveSetName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(slaveSetName, 7, _charset));
+		}
+		if (null != slaveSetArea) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(slaveSetArea, 8, _charset));
+		}
+		if (null != slaveSetID) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(slaveSetID, 9, _charset));
+		}
+		if (null != tarsVersion) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(tarsVersion, 10, _charset));
+		}
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.masterName = _is.read(masterName, 0, true);
 		this.slaveName = _is.read(slaveName, 1, true);
@@ -26,7 +26,15 @@ import com.qq.tars.protocol.tars.*;
 import com.qq.tars.protocol.tars.annotation.*;
 
 @TarsStruct
-public class StatSampleMsg {
+public class StatSampleMsg implements TarsSized {
+
+	static {
+		TarsStructFactory.register(StatSampleMsg.class, new TarsStructFactory.Creator<StatSampleMsg>() {
+			public StatSampleMsg create() {
+				return new StatSampleMsg();
+			}
+		});
+	}
 
 	@TarsStructProperty(order = 0, isRequire = true)
 	public String unid = "";
@@ -199,6 +207,32 @@ public class StatSampleMsg {
 		_os.write(parentWidth, 8);
 	}
 
+	public int serializedSize(java.nio.charset.Charset _charset) {
+		int _size = 0;
+		if (null != unid) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(unid, 0, _charset));
+		}
+		if (null != masterName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(masterName, 1, _charset));
+		}
+		if (null != slaveName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(slaveName, 2, _charset));
+		}
+		if (null != interfaceName) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(interfaceName, 3, _charset));
+		}
+		if (null != masterIp) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(masterIp, 4, _charset));
+		}
+		if (null != slaveIp) {
+			_size = TarsSize.add(_size, TarsSize.sizeOf(slaveIp, 5, _charset));
+		}
+		_size = TarsSize.add(_size, TarsSize.sizeOf(depth, 6, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(width, 7, _charset));
+		_size = TarsSize.add(_size, TarsSize.sizeOf(parentWidth, 8, _charset));
+		return _size;
+	}
+
 	public void readFrom(TarsInputStream _is) {
 		this.unid = _is.read(unid, 0, true);
 		this.masterName = _is.read(masterName, 1, true);
@@ -15,12 +15,24 @@
  */
 package com.qq.tars.context.impl;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * 线程上下文属性. 属性较少时保存在固定的slot数组中, 只有超出slot数量或者需要Map视图时才转为HashMap
+ */
 public class ContextItem {
 	
-	private Map<String, Object> attributes = new HashMap<String, Object>();
+	private static final int SLOT_SIZE = 8;
+	
+	private final String[] keys = new String[SLOT_SIZE];
+	
+	private final Object[] values = new Object[SLOT_SIZE];
+	
+	private int count = 0;
+	
+	private Map<String, Object> attributes = null;
 	
 	@SuppressWarnings("unchecked")
 	public <T> T getAttribute(String name) {
@@ -30,17 +42,68 @@ public class ContextItem {
 	@SuppressWarnings("unchecked")
 	public <T> T getAttribute(String name, T defaultValue) {
 		Object value = null;
-		value = attributes.get(name);
+		if (attributes != null) {
+			value = attributes.get(name);
+		} else {
+			int index = indexOf(name);
+			value = index < 0 ? null : values[index];
+		}
 		if (value == null) return defaultValue;
 		return (T)value;
 	}
 	
 	public <T> void setAttribute(String name, T value) {
-		this.attributes.put(name, value);
+		if (attributes != null) {
+			this.attributes.put(name, value);
+			return;
+		}
+		int index = indexOf(name);
+		if (index >= 0) {
+			values[index] = value;
+		} else if (count < SLOT_SIZE) {
+			keys[count] = name;
+			values[count++] = value;
+		} else {
+			getMap().put(name, value);
+		}
+	}
+	
+	public int size() {
+		return attributes != null ? attributes.size() : count;
 	}
 	
 	public Map<String, Object> getMap() {
+		if (attributes == null) {
+			attributes = new HashMap<String, Object>();
+			for (int i = 0; i < count; i++) {
+				attributes.put(keys[i], values[i]);
+			}
+			reset();
+		}
 		return attributes;
 	}
+	
+	public void clear() {
+		reset();
+		attributes = null;
+	}
+	
+	private void reset() {
+		if (count > 0) {
+			Arrays.fill(keys, 0, count, null);
+			Arrays.fill(values, 0, count, null);
+			count = 0;
+		}
+	}
+	
+	private int indexOf(String name) {
+		for (int i = 0; i < count; i++) {
+			String key = keys[i];
+			if (key == name || (key != null && key.equals(name))) {
+				return i;
+			}
+		}
+		return -1;
+	}
 
 }
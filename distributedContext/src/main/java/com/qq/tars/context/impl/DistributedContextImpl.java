@@ -28,8 +28,11 @@ public class DistributedContextImpl implements DistributedContext {
 		}
 	};
 
+	/**
+	 * 清空当前线程的上下文属性, ContextItem在线程内复用
+	 */
 	public void clear() {
-		contexts.remove();
+		contexts.get().clear();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -53,7 +56,7 @@ public class DistributedContextImpl implements DistributedContext {
 	}
 
 	public int size() {
-		return getItem().getMap().size();
+		return getItem().size();
 	}
 	
 	private ContextItem getItem() {
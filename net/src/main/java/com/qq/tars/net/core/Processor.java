@@ -19,4 +19,14 @@ package com.qq.tars.net.core;
 public abstract class Processor {
 
     public abstract Response process(Request request, Session session);
+
+    /**
+     * 服务排空超时后仍在队列中的请求, 子类可直接返回错误响应, 默认正常处理
+     * @param request
+     * @param session
+     * @return
+     */
+    public Response processDraining(Request request, Session session) {
+        return process(request, session);
+    }
 }
@@ -100,6 +100,10 @@ public abstract class Request {
         this.bornTime = System.currentTimeMillis();
     }
 
+    public void setBornTime(long bornTime) {
+        this.bornTime = bornTime;
+    }
+
     public long getProcessTime() {
         return processTime;
     }
@@ -35,6 +35,11 @@ public abstract class Response {
 
     private volatile boolean commited = false;
 
+    //异步响应写回后的回调, 以下两个字段由this保护
+    private Runnable asyncEndListener = null;
+
+    private boolean asyncEnded = false;
+
     public Response(Session session) {
         this.session = session;
     }
@@ -57,7 +62,30 @@ public abstract class Response {
     public void asyncCallEnd() throws IOException {
         if (!this.asyncMode) throw new IllegalStateException("The response is not async mode.");
         ensureNotCommitted();
-        session.write(this);
+        try {
+            session.write(this);
+        } finally {
+            Runnable listener = null;
+            synchronized (this) {
+                asyncEnded = true;
+                listener = asyncEndListener;
+            }
+            if (listener != null) listener.run();
+        }
+    }
+
+    /**
+     * 异步响应写回后执行回调, 已经写回时立即执行
+     * @param listener
+     */
+    public void onAsyncCallEnd(Runnable listener) {
+        synchronized (this) {
+            if (!asyncEnded) {
+                asyncEndListener = listener;
+                return;
+            }
+        }
+        listener.run();
     }
 
     public void setTicketNumber(int ticketNum) {
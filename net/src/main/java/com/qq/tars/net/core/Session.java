@@ -60,6 +60,15 @@ public abstract class Session {
 
     public abstract ProtocolFactory getProtocolFactory();
 
+    /**
+     * 把已解码的请求交给服务线程池处理, 与从连接上读取的请求相同
+     * @param request
+     * @throws IOException
+     */
+    public void dispatch(Request request) throws IOException {
+        throw new IOException("dispatch is not supported by " + getClass().getName());
+    }
+
     public SessionStatus getStatus() {
         return status;
     }
@@ -19,10 +19,15 @@ package com.qq.tars.net.core.nio;
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.qq.tars.net.core.Processor;
+import com.qq.tars.net.core.Session;
 import com.qq.tars.net.protocol.ProtocolFactory;
 
 /**
@@ -48,6 +53,17 @@ public final class SelectorManager {
 
     private boolean isTcpNoDelay = false;
 
+    //排空模式：不再接收新连接，等待在途请求处理完成
+    private volatile boolean draining = false;
+
+    private volatile long drainDeadline = Long.MAX_VALUE;
+
+    //已读取但尚未写回响应的请求数
+    private final AtomicInteger inFlightRequests = new AtomicInteger(0);
+
+    //服务端已接收的TCP会话
+    private final Set<TCPSession> sessions = Collections.newSetFromMap(new ConcurrentHashMap<TCPSession, Boolean>());
+
     public SelectorManager(int selectorPoolSize, ProtocolFactory protocolFactory, Executor threadPool,
                            Processor processor, boolean keepAlive, String reactorNamePrefix) throws IOException {
         this(selectorPoolSize, protocolFactory, threadPool, processor, keepAlive, reactorNamePrefix, false);
@@ -100,6 +116,90 @@ public final class SelectorManager {
         }
     }
 
+    /**
+     * 进入排空模式，截止时间之后仍在队列中的请求由Processor快速失败
+     * @param deadline 截止时间(毫秒时间戳)
+     */
+    public void beginDrain(long deadline) {
+        this.drainDeadline = deadline;
+        this.draining = true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public long getDrainDeadline() {
+        return drainDeadline;
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * 等待在途请求处理完成, 再在各会话的待写数据发送完毕后关闭会话
+     * @param deadline 截止时间(毫秒时间戳)
+     * @return 截止时间前排空返回true
+     */
+    public boolean awaitDrained(long deadline) {
+        if (!waitUntil(deadline, true)) {
+            return false;
+        }
+        for (TCPSession session : sessions) {
+            try {
+                session.closeAfterFlush();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return waitUntil(deadline, false);
+    }
+
+    private boolean waitUntil(long deadline, boolean requests) {
+        while (requests ? inFlightRequests.get() > 0 : !sessions.isEmpty()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 关闭所有已接收的会话, 不再等待待写数据
+     */
+    public void closeSessions() {
+        for (TCPSession session : sessions) {
+            try {
+                session.asyncClose();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    void requestStarted() {
+        inFlightRequests.incrementAndGet();
+    }
+
+    void requestFinished() {
+        inFlightRequests.decrementAndGet();
+    }
+
+    void registerSession(TCPSession session) {
+        sessions.add(session);
+    }
+
+    void unregisterSession(TCPSession session) {
+        sessions.remove(session);
+    }
+
     public Reactor getReactor(int index) {
         if (index < 0 || index > this.reactorSet.length - 1) {
             throw new IllegalArgumentException("failed to get one reactor thread...");
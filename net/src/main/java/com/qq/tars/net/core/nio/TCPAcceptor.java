@@ -74,6 +74,7 @@ public class TCPAcceptor extends Acceptor {
 
         //3. Register session
         SessionManager.getSessionManager().registerSession(session);
+        selectorManager.registerSession(session);
 
         //4. Register channel with the specified session
         selectorManager.nextReactor().registerChannel(channel, SelectionKey.OP_READ, session);
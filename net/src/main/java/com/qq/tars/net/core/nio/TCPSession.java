@@ -21,8 +21,10 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.qq.tars.net.client.ticket.Ticket;
@@ -53,6 +55,18 @@ public class TCPSession extends Session {
 
     private Queue<ByteBuffer> queue = new LinkedBlockingQueue<ByteBuffer>(1024 * 8);
 
+    //一次写操作最多合并的数据包个数
+    private static final int MAX_GATHER_WRITE = 64;
+
+    //只在doWrite中使用
+    private final ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHER_WRITE];
+
+    //已注册OP_WRITE且尚未写完, 此时新的数据包只需入队, 不必再唤醒selector
+    private final AtomicBoolean writePending = new AtomicBoolean();
+
+    //待写数据全部写入socket后关闭连接
+    private volatile boolean closeAfterFlush = false;
+
     private static final AtomicInteger hashCodeGenerator = new AtomicInteger();
 
     private int hashCode = 0;
@@ -88,6 +102,7 @@ public class TCPSession extends Session {
         this.key = null;
         this.channel = null;
 
+        selectorManager.unregisterSession(this);
         SessionManager.getSessionManager().unregisterSession(this);
     }
 
@@ -133,10 +148,10 @@ public class TCPSession extends Session {
                 }
 
                 if (request != null) {
+                    request.resetBornTime();
                     try {
-                        request.resetBornTime();
                         //处理真实的request读请求
-                        selectorManager.getThreadPool().execute(new WorkThread(request, selectorManager));
+                        dispatch(request);
                     } catch (Exception ex) {
                         ex.printStackTrace();
                     }
@@ -231,6 +246,19 @@ public class TCPSession extends Session {
     public void accept() throws IOException {
     }
 
+    @Override
+    public void dispatch(Request request) throws IOException {
+        //排空开始后不再接收新请求, 在连接关闭前快速失败, 不计入在途请求
+        boolean rejected = selectorManager.isDraining();
+        if (!rejected) selectorManager.requestStarted();
+        try {
+            selectorManager.getThreadPool().execute(new WorkThread(request, selectorManager, !rejected, rejected));
+        } catch (RuntimeException ex) {
+            if (!rejected) selectorManager.requestFinished();
+            throw new IOException("failed to dispatch request", ex);
+        }
+    }
+
     /**
      * 写入流
      * @param buffer
@@ -245,50 +273,60 @@ public class TCPSession extends Session {
             throw new IOException("The session queue is full. [ queue size:" + queue.size() + " ]");
         }
 
-        if (key != null) {
+        SelectionKey key = this.key;
+        if (key != null && writePending.compareAndSet(false, true)) {
             key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
             key.selector().wakeup();
         }
     }
 
     /**
-     * TCP Session真实的写请求
-     * @return
+     * TCP Session真实的写请求, 把并发写入的多个数据包合并为一次gather写
+     * @return 写完的数据包个数
      * @throws IOException
      */
     protected synchronized int doWrite() throws IOException {
         int writeBytes = 0;
 
         while (true) {
-            ByteBuffer wBuf = queue.peek();
+            int count = 0;
+            for (ByteBuffer wBuf : queue) {
+                gatherBuffers[count++] = wBuf;
+                if (count == MAX_GATHER_WRITE) {
+                    break;
+                }
+            }
 
-            if (wBuf == null) {
+            if (count == 0) {
+                if (closeAfterFlush) {
+                    close();
+                    return writeBytes;
+                }
+                //先取消OP_WRITE再清除标记, 清除后写入的数据由写入方或下面的检查重新注册OP_WRITE
                 key.interestOps(SelectionKey.OP_READ);
+                writePending.set(false);
 
-                if (queue.peek() != null) {
+                if (queue.peek() != null && writePending.compareAndSet(false, true)) {
                     key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
                 }
-
-                key.selector().wakeup();
                 break;
             }
 
-            int bytesWritten = ((SocketChannel) channel).write(wBuf);
+            ((SocketChannel) channel).write(gatherBuffers, 0, count);
+
+            int written = 0;
+            while (written < count && gatherBuffers[written].remaining() == 0) {
+                queue.remove();
+                written++;
+            }
+            Arrays.fill(gatherBuffers, 0, count, null);
+            writeBytes += written;
 
-            if (bytesWritten == 0 && wBuf.remaining() > 0) // Socket buffer is full.
+            if (written < count) // Socket buffer is full.
             {
                 key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-                key.selector().wakeup();
                 break;
             }
-
-            if (wBuf.remaining() == 0) {
-                writeBytes++;
-                queue.remove();
-                continue;
-            } else {
-                return -1;
-            }
         }
 
         if (!isKeepAlive()) close();
@@ -310,6 +348,32 @@ public class TCPSession extends Session {
         return newBuffer;
     }
 
+    /**
+     * 待写数据全部写入socket后关闭连接, 没有待写数据时立即关闭
+     * @throws IOException
+     */
+    public void closeAfterFlush() throws IOException {
+        this.closeAfterFlush = true;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                asyncClose();
+                return;
+            }
+        }
+        SelectionKey key = this.key;
+        if (key != null && writePending.compareAndSet(false, true)) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            key.selector().wakeup();
+        }
+    }
+
+    /**
+     * 尚未写入socket的数据包个数
+     */
+    public int getWriteQueueSize() {
+        return queue.size();
+    }
+
     public SelectionKey getKey() {
         return key;
     }
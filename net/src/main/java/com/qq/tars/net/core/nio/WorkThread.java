@@ -33,6 +33,12 @@ public final class WorkThread implements Runnable {
 
     private SelectorManager selectorManager = null;
 
+    //是否计入SelectorManager的在途请求数
+    private boolean inFlightTracked = false;
+
+    //排空开始后读取的请求, 不再处理直接快速失败
+    private boolean rejected = false;
+
     public Request getRequest() {
         return req;
     }
@@ -42,10 +48,12 @@ public final class WorkThread implements Runnable {
         udpSession = null;
     }
 
-    WorkThread(Request req, SelectorManager selectorManager) {
+    WorkThread(Request req, SelectorManager selectorManager, boolean inFlightTracked, boolean rejected) {
         this.req = req;
         udpSession = null;
         this.selectorManager = selectorManager;
+        this.inFlightTracked = inFlightTracked;
+        this.rejected = rejected;
     }
 
     private final UDPSession udpSession;
@@ -79,10 +87,26 @@ public final class WorkThread implements Runnable {
                 req.setProcessTime(System.currentTimeMillis());
                 //解析数据流
                 req.init();
-                //这里拿到processor处理request
-                Response res = selectorManager.getProcessor().process(req, req.getIoSession());
+                //这里拿到processor处理request, 排空开始后读取的请求和排空超时后仍在队列中的请求快速失败
+                Response res = null;
+                if (rejected || (selectorManager.isDraining() && System.currentTimeMillis() > selectorManager.getDrainDeadline())) {
+                    res = selectorManager.getProcessor().processDraining(req, req.getIoSession());
+                } else {
+                    res = selectorManager.getProcessor().process(req, req.getIoSession());
+                }
                 //非异步模式，TCPSession写入response
-                if (!res.isAsyncMode()) req.getIoSession().write(res);
+                if (!res.isAsyncMode()) {
+                    req.getIoSession().write(res);
+                } else if (inFlightTracked) {
+                    //异步模式在响应写回后才结束在途计数
+                    res.onAsyncCallEnd(new Runnable() {
+
+                        public void run() {
+                            selectorManager.requestFinished();
+                        }
+                    });
+                    inFlightTracked = false;
+                }
             } else if (resp != null) {
                 //输出
                 resp.init();
@@ -103,6 +127,9 @@ public final class WorkThread implements Runnable {
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
+            if (inFlightTracked) {
+                selectorManager.requestFinished();
+            }
             clearDistributedContext();
         }
     }
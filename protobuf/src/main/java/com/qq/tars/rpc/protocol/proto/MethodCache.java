@@ -18,10 +18,16 @@ package com.qq.tars.rpc.protocol.proto;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
 public class MethodCache {
-    private ConcurrentHashMap<Class, Method> cache = new ConcurrentHashMap<Class, Method>();
+    //每个消息类型解析一次Parser, 之后直接调用, 不再反射
+    private ConcurrentHashMap<Class, Parser<?>> cache = new ConcurrentHashMap<Class, Parser<?>>();
 
     private static final MethodCache instance = new MethodCache();
 
@@ -31,14 +37,33 @@ public class MethodCache {
 
     private MethodCache() {}
 
-    public Object parseFrom(Class clazz, byte[] data) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        Method method = this.cache.get(clazz);
-        if (method == null) {
-            method = clazz.getMethod("parseFrom", byte[].class);
-            method.setAccessible(true);
-            this.cache.putIfAbsent(clazz, method);
-            method = this.cache.get(clazz);
+    public Object parseFrom(Class clazz, byte[] data) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InvalidProtocolBufferException {
+        return getParser(clazz).parseFrom(data);
+    }
+
+    /**
+     * 直接在缓冲区上解析, 堆内缓冲区不复制数据
+     * @param clazz
+     * @param data
+     * @return
+     */
+    public Object parseFrom(Class clazz, ByteBuffer data) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InvalidProtocolBufferException {
+        Parser<?> parser = getParser(clazz);
+        if (data.hasArray()) {
+            return parser.parseFrom(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return parser.parseFrom(bytes);
+    }
+
+    public Parser<?> getParser(Class clazz) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+        Parser<?> parser = this.cache.get(clazz);
+        if (parser == null) {
+            Method method = clazz.getMethod("getDefaultInstance");
+            parser = ((MessageLite) method.invoke(null)).getParserForType();
+            this.cache.putIfAbsent(clazz, parser);
         }
-        return method.invoke(null, data);
+        return parser;
     }
 }
@@ -16,9 +16,13 @@
 
 package com.qq.tars.rpc.protocol.proto;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.GeneratedMessage;
+import com.google.protobuf.MessageLite;
 import com.qq.tars.common.util.Constants;
 import com.qq.tars.net.protocol.ProtocolException;
+import com.qq.tars.protocol.tars.TarsOutputStream;
+import com.qq.tars.protocol.tars.TarsSize;
 import com.qq.tars.protocol.tars.support.TarsMethodInfo;
 import com.qq.tars.protocol.tars.support.TarsMethodParameterInfo;
 import com.qq.tars.protocol.util.TarsHelper;
@@ -26,6 +30,7 @@ import com.qq.tars.rpc.protocol.tars.TarsCodec;
 import com.qq.tars.rpc.protocol.tars.TarsServantRequest;
 import com.qq.tars.rpc.protocol.tars.TarsServantResponse;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class ProtoCodec extends TarsCodec {
@@ -54,6 +59,55 @@ public class ProtoCodec extends TarsCodec {
         return ((GeneratedMessage) parameter[0]).toByteArray();
     }
 
+    @Override
+    protected int sizeOfResult(TarsServantResponse response, String charsetName) {
+        if (TarsHelper.isPing(response.getRequest().getFunctionName()) || !(response.getResult() instanceof MessageLite)) {
+            return TarsSize.UNKNOWN;
+        }
+        return ((MessageLite) response.getResult()).getSerializedSize();
+    }
+
+    @Override
+    protected void writeResult(TarsOutputStream os, TarsServantResponse response, String charsetName, int size, int tag) throws ProtocolException {
+        writeMessage(os, (MessageLite) response.getResult(), size, tag);
+    }
+
+    @Override
+    protected int sizeOfRequestParams(TarsServantRequest request, String charsetName) {
+        return requestMessage(request).getSerializedSize();
+    }
+
+    @Override
+    protected void writeRequestParams(TarsOutputStream os, TarsServantRequest request, String charsetName, int size, int tag) throws ProtocolException {
+        writeMessage(os, requestMessage(request), size, tag);
+    }
+
+    private MessageLite requestMessage(TarsServantRequest request) {
+        Object[] parameter = request.getMethodParameters();
+        if (TarsHelper.isCallback(request.getMethodInfo().getParametersList().get(0).getAnnotations())) {
+            return (MessageLite) parameter[1];
+        }
+        return (MessageLite) parameter[0];
+    }
+
+    /**
+     * 通过CodedOutputStream把消息直接写入tars包的byte[]字段, 不再经过toByteArray
+     */
+    private static void writeMessage(TarsOutputStream os, MessageLite message, int size, int tag) throws ProtocolException {
+        ByteBuffer slot = os.writeByteArrayHead(size, tag);
+        try {
+            if (slot.hasArray()) {
+                CodedOutputStream output = CodedOutputStream.newInstance(slot.array(), slot.arrayOffset() + slot.position(), size);
+                message.writeTo(output);
+                output.checkNoSpaceLeft();
+            } else {
+                slot.put(message.toByteArray());
+            }
+        } catch (Exception e) {
+            throw new ProtocolException(e);
+        }
+    }
+
     @Override
     protected Object[] decodeRequestBody(byte[] data, String charset,  TarsMethodInfo methodInfo) throws Exception {
         List<TarsMethodParameterInfo> parametersList = methodInfo.getParametersList();
@@ -72,6 +126,24 @@ public class ProtoCodec extends TarsCodec {
         return new Object[]{MethodCache.getInstance().parseFrom((Class) returnInfo.getStamp(), data)};
     }
 
+    @Override
+    protected Object[] decodeRequestBody(ByteBuffer data, String charset, TarsMethodInfo methodInfo) throws Exception {
+        List<TarsMethodParameterInfo> parametersList = methodInfo.getParametersList();
+        return new Object[]{MethodCache.getInstance().parseFrom((Class) parametersList.get(0).getStamp(), data)};
+    }
+
+    @Override
+    protected Object[] decodeResponseBody(ByteBuffer data, String charset, TarsMethodInfo methodInfo) throws Exception {
+        TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
+        return new Object[]{MethodCache.getInstance().parseFrom((Class) returnInfo.getStamp(), data)};
+    }
+
+    @Override
+    protected Object[] decodeCallbackArgs(ByteBuffer data, String charset, TarsMethodInfo methodInfo) throws Exception {
+        TarsMethodParameterInfo returnInfo = methodInfo.getReturnInfo();
+        return new Object[]{MethodCache.getInstance().parseFrom((Class) returnInfo.getStamp(), data)};
+    }
+
     public String getProtocol() {
         return Constants.PROTO_PROTOCOL;
     }
@@ -260,12 +260,22 @@ public class Tars2JavaMojo extends AbstractMojo {
         printDoc(out, getDoc(struct, ""));
         out.println("@TarsStruct");
         if (key == null) {
-            out.println("public class " + struct.structName() + " {");
+            out.println("public class " + struct.structName() + " implements TarsSized {");
         } else {
-            out.println("public class " + struct.structName() + " implements Comparable<" + struct.structName() + "> {");
+            out.println("public class " + struct.structName() + " implements TarsSized, Comparable<" + struct.structName() + "> {");
         }
         out.println();
 
+        // 注册实例工厂, 解码时不再反射创建实例
+        out.println("\tstatic {");
+        out.println("\t\tTarsStructFactory.register(" + structClass + ".class, new TarsStructFactory.Creator<" + structClass + ">() {");
+        out.println("\t\t\tpublic " + structClass + " create() {");
+        out.println("\t\t\t\treturn new " + structClass + "();");
+        out.println("\t\t\t}");
+        out.println("\t\t});");
+        out.println("\t}");
+        out.println();
+
         // 定义成员变量
         for (TarsStructMember m : struct.memberList()) {
             out.println("\t@TarsStructProperty(order = " + m.tag() + ", isRequire = " + m.isRequire() + ")");
@@ -403,6 +413,27 @@ public class Tars2JavaMojo extends AbstractMojo {
         out.println("\t}");
         out.println();
 
+        //serializedSize, 与writeTo的规则一致, 编码前用于一次性分配缓冲区
+        out.println("\tpublic int serializedSize(java.nio.charset.Charset _charset) {");
+        out.println("\t\tint _size = 0;");
+        for (TarsStructMember m : struct.memberList()) {
+            String sizeOf = "_size = TarsSize.add(_size, TarsSize.sizeOf(" + m.memberName() + ", " + m.tag() + ", _charset));";
+            boolean nullable = !m.memberType().isPrimitive() && !isEnum(m.memberType(), nsMap);
+            if (!nullable && m.memberType().asPrimitive() != null) {
+                nullable = m.memberType().asPrimitive().primitiveType().equals(PrimitiveType.STRING);
+            }
+            if (!m.isRequire() && nullable) {
+                out.println("\t\tif (null != " + m.memberName() + ") {");
+                out.println("\t\t\t" + sizeOf);
+                out.println("\t\t}");
+            } else {
+                out.println("\t\t" + sizeOf);
+            }
+        }
+        out.println("\t\treturn _size;");
+        out.println("\t}");
+        out.println();
+
         //cache var
         for (TarsStructMember m : struct.memberList()) {
             boolean isenum = isEnum(m.memberType(), nsMap);